@@ -0,0 +1,59 @@
+package ru.practicum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Кольцо согласованного хэширования узлов stats-server: каждый узел занимает {@link #VIRTUAL_NODES} точек
+ * кольца, ключ принадлежит первому узлу по часовой стрелке от своего хэша. При добавлении узла к нему
+ * переезжает примерно 1/n ключей, остальные остаются на месте.
+ */
+final class ConsistentHashRing {
+    static final int VIRTUAL_NODES = 160;
+
+    private final List<String> nodes;
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    ConsistentHashRing(List<String> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one stats node is required");
+        }
+        this.nodes = List.copyOf(nodes);
+        for (String node : this.nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    List<String> nodes() {
+        return nodes;
+    }
+
+    String nodeFor(String key) {
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * FNV-1a по байтам UTF-8 с перемешиванием из MurmurHash3, чтобы близкие строки расходились по кольцу.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
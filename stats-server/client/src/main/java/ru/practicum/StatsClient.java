@@ -2,6 +2,7 @@ package ru.practicum;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +10,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -19,66 +22,138 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class StatsClient {
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(100);
 
     private final String application;
-    private final String statsServiceUri;
+    private final ConsistentHashRing shards;
     private final ObjectMapper json;
     private final HttpClient httpClient;
+    private final ExecutorService fanOutExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
+    // Хиты уходят кадром EndpointHitFrame вместо JSON
+    @Value("${services.stats-service.binary-hits:false}")
+    private boolean binaryHits;
+
+    // Повторы отправки хитов при таймауте или ответе 5xx. Хиты уходят с hitId, поэтому повтор не удваивает
+    // статистику, только если на сервере включено stats.dedup.enabled
+    @Value("${services.stats-service.hit-retries:0}")
+    private int hitRetries;
+
+    @Value("${services.stats-service.hit-timeout:PT5S}")
+    private Duration hitTimeout = Duration.ofSeconds(5);
+
+    /**
+     * statsServiceUri - адрес stats-server или несколько адресов через запятую. Хиты распределяются по узлам
+     * согласованным хэшированием uri, поэтому все хиты одного uri хранятся на одном узле.
+     */
     public StatsClient(@Value("${spring.application.name}") String application,
                        @Value("${services.stats-service.uri:http://localhost:9090}") String statsServiceUri,
                        ObjectMapper json) {
         this.application = application;
-        this.statsServiceUri = statsServiceUri;
+        this.shards = new ConsistentHashRing(Arrays.stream(statsServiceUri.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .toList());
         this.json = json;
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(2))
                 .build();
     }
 
+    @PreDestroy
+    public void close() {
+        fanOutExecutor.close();
+    }
+
     public void hit(HttpServletRequest userRequest) {
         EndpointHit hit = EndpointHit.builder()
                 .app(application)
                 .ip(userRequest.getRemoteAddr())
                 .uri(userRequest.getRequestURI())
                 .timestamp(LocalDateTime.now())
+                .hitId(UUID.randomUUID().toString())
                 .build();
 
-        try {
-            HttpRequest.BodyPublisher bodyPublisher = HttpRequest
-                    .BodyPublishers
-                    .ofString(json.writeValueAsString(hit));
+        send(shards.nodeFor(hit.getUri()), "/hit", hit, List.of(hit));
+    }
 
-            HttpRequest hitRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(statsServiceUri + "/hit"))
-                    .POST(bodyPublisher)
-                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
-                    .header(HttpHeaders.ACCEPT, "application/json")
-                    .build();
+    /**
+     * Запрос уходит узлам, которым принадлежат запрошенные uri; без фильтра по uri или с шаблонами - всем узлам.
+     * Uri хранится на одном узле, поэтому частичные ответы не пересекаются и объединяются без пересчёта
+     * уникальных ip. Строки одной пары с разных узлов бывают только после смены списка узлов и складываются.
+     * Недоступный узел даёт пустой частичный ответ.
+     */
+    public List<ViewStats> getStats(ViewsStatsRequest request) {
+        ViewsStatsRequest scoped = request.hasApplicationCondition() ? request : request.toBuilder()
+                .application(application)
+                .build();
+        Map<String, ViewsStatsRequest> shardRequests = shardRequests(scoped);
+        if (shardRequests.size() == 1) {
+            Map.Entry<String, ViewsStatsRequest> only = shardRequests.entrySet().iterator().next();
+            return fetchStats(only.getKey(), only.getValue());
+        }
 
-            HttpResponse<Void> response = httpClient.send(hitRequest, HttpResponse.BodyHandlers.discarding());
-            log.debug("Response from stats-service: {}", response);
-        } catch (Exception e) {
-            log.warn("Cannot record hit", e);
+        List<CompletableFuture<List<ViewStats>>> partials = shardRequests.entrySet().stream()
+                .map(shard -> CompletableFuture.supplyAsync(
+                        () -> fetchStats(shard.getKey(), shard.getValue()), fanOutExecutor))
+                .toList();
+        Map<AppUri, Long> hits = new HashMap<>();
+        partials.forEach(partial -> partial.join().forEach(viewStats ->
+                hits.merge(new AppUri(viewStats.getApp(), viewStats.getUri()), viewStats.getHits(), Long::sum)));
+        Stream<ViewStats> merged = hits.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(ViewStats.ORDER)
+                .skip(scoped.getOffset());
+        return (scoped.hasLimitCondition() ? merged.limit(scoped.getLimit()) : merged).toList();
+    }
+
+    /**
+     * Запрос к каждому узлу: свои uri, а вместо offset первые offset + limit строк, чтобы страницу можно было
+     * собрать после объединения.
+     */
+    private Map<String, ViewsStatsRequest> shardRequests(ViewsStatsRequest request) {
+        List<String> uris = request.getUris() == null ? List.of() : request.getUris();
+        if (shards.nodes().size() == 1) {
+            return Map.of(shards.nodes().get(0), request);
+        }
+        Map<String, List<String>> urisByNode = new LinkedHashMap<>();
+        if (uris.isEmpty() || uris.stream().anyMatch(uri -> uri.indexOf('*') >= 0)) {
+            shards.nodes().forEach(node -> urisByNode.put(node, uris));
+        } else {
+            uris.forEach(uri -> urisByNode.computeIfAbsent(shards.nodeFor(uri), node -> new ArrayList<>()).add(uri));
         }
+        Integer limit = request.hasLimitCondition() ? request.getOffset() + request.getLimit() : null;
+        Map<String, ViewsStatsRequest> requests = new LinkedHashMap<>();
+        urisByNode.forEach((node, nodeUris) -> requests.put(node, request.toBuilder()
+                .uris(nodeUris)
+                .limit(limit)
+                .offset(0)
+                .build()));
+        return requests;
     }
 
-    public List<ViewStats> getStats(ViewsStatsRequest request) {
+    private List<ViewStats> fetchStats(String node, ViewsStatsRequest request) {
         try {
-            String queryString = toQueryString(
-                    request.toBuilder()
-                            .application(application)
-                            .build()
-            );
+            String queryString = toQueryString(request);
 
             HttpRequest httpRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(statsServiceUri + "/stats" + queryString))
+                    .uri(URI.create(node + "/stats" + queryString))
                     .header(HttpHeaders.ACCEPT, "application/json")
                     .build();
 
@@ -90,48 +165,108 @@ public class StatsClient {
             }
             log.debug("Response from stats-service: {}", response);
         } catch (Exception e) {
-            log.warn("Cannot get view stats for request: " + request, e);
+            log.warn("Cannot get view stats from " + node + " for request: " + request, e);
         }
         return Collections.emptyList();
     }
 
     public void postStats(EndpointHit hit) {
-        try {
-            HttpRequest.BodyPublisher bodyPublisher = HttpRequest
-                    .BodyPublishers
-                    .ofString(json.writeValueAsString(hit));
+        EndpointHit identified = withHitId(hit);
+        send(shards.nodeFor(identified.getUri()), "/hit", identified, List.of(identified));
+    }
+
+    /**
+     * Отправляет пачку хитов запросом {@code POST /hit/batch} на каждый узел, которому принадлежат их uri.
+     */
+    public void postStats(List<EndpointHit> hits) {
+        Map<String, List<EndpointHit>> hitsByNode = new LinkedHashMap<>();
+        for (EndpointHit hit : hits) {
+            hitsByNode.computeIfAbsent(shards.nodeFor(hit.getUri()), node -> new ArrayList<>()).add(withHitId(hit));
+        }
+        hitsByNode.forEach((node, nodeHits) -> send(node, "/hit/batch", nodeHits, nodeHits));
+    }
+
+    /**
+     * Хиты без hitId получают случайный, чтобы повтор запроса сервер мог отличить от нового хита.
+     */
+    private EndpointHit withHitId(EndpointHit hit) {
+        return hit.getHitId() != null ? hit : hit.toBuilder().hitId(UUID.randomUUID().toString()).build();
+    }
 
+    private void send(String node, String path, Object body, List<EndpointHit> hits) {
+        try {
             HttpRequest hitRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(statsServiceUri + "/hit"))
-                    .POST(bodyPublisher)
-                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .uri(URI.create(node + path))
+                    .POST(toBodyPublisher(body, hits))
+                    .timeout(hitTimeout)
+                    .header(HttpHeaders.CONTENT_TYPE, binaryHits ? EndpointHitFrame.MEDIA_TYPE : "application/json")
                     .header(HttpHeaders.ACCEPT, "application/json")
                     .build();
 
-            HttpResponse<Void> response = httpClient.send(hitRequest, HttpResponse.BodyHandlers.discarding());
-            log.debug("Response from stats-service: {}", response);
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    HttpResponse<Void> response = httpClient.send(hitRequest, HttpResponse.BodyHandlers.discarding());
+                    log.debug("Response from stats-service: {}", response);
+                    if (response.statusCode() < HttpStatus.INTERNAL_SERVER_ERROR.value() || attempt >= hitRetries) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    if (attempt >= hitRetries) {
+                        throw e;
+                    }
+                    log.debug("Retrying hit after {}", e.toString());
+                }
+                Thread.sleep(RETRY_BACKOFF.toMillis() * (attempt + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while recording hit");
         } catch (Exception e) {
             log.warn("Cannot record hit", e);
         }
     }
 
+    private HttpRequest.BodyPublisher toBodyPublisher(Object body, List<EndpointHit> hits) throws IOException {
+        if (!binaryHits) {
+            return HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * hits.size());
+        EndpointHitFrame.write(hits, out);
+        return HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+    }
+
     private String toQueryString(ViewsStatsRequest request) {
         String start = encode(DTF.format(request.getStart()));
         String end = encode(DTF.format(request.getEnd()));
 
         String queryString = String.format("?start=%s&end=%s&unique=%b&application=%s",
-                start, end, request.isUnique(), application);
+                start, end, request.isUnique(), encode(request.getApplication()));
 
         queryString += "&uris=" + String.join(",", request.getUris());
 
+        if (request.isExact()) {
+            queryString += "&exact=true";
+        }
+
+        if (request.isStream()) {
+            queryString += "&stream=true";
+        }
+
         if (request.hasLimitCondition()) {
             queryString += "&limit=" + request.getLimit();
         }
 
+        if (request.getOffset() > 0) {
+            queryString += "&offset=" + request.getOffset();
+        }
+
         return queryString;
     }
 
     private String encode(String value) {
         return URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
+
+    private record AppUri(String app, String uri) {
+    }
 }
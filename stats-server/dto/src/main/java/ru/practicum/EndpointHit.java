@@ -9,11 +9,13 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Getter
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class EndpointHit {
     private Long id;
+    // Необязательный id, который клиент присваивает хиту: повтор запроса с тем же hitId сервер не сохраняет
+    private String hitId;
     private String app;
     private String uri;
     private String ip;
@@ -0,0 +1,77 @@
+package ru.practicum;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Компактное двоичное представление пачки хитов для {@code POST /hit} и {@code POST /hit/batch}
+ * с типом содержимого {@value #MEDIA_TYPE}.
+ * <p>
+ * Кадр: байт версии, число хитов (int), затем для каждого хита app, uri и ip в modified UTF-8 с двухбайтовой
+ * длиной, timestamp в миллисекундах (long) и, начиная с версии 2, hitId (пустая строка - без hitId).
+ * Timestamp передаётся как локальное время, отсчитанное от эпохи без учёта часового пояса, - так же,
+ * как строка {@code yyyy-MM-dd HH:mm:ss} в JSON. Поля app, uri, ip и timestamp обязательны; id не передаётся.
+ * Кадры версии 1 по-прежнему читаются.
+ */
+public final class EndpointHitFrame {
+    public static final String MEDIA_TYPE = "application/x-stats-hits";
+
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_HIT_ID = 1;
+
+    private EndpointHitFrame() {
+    }
+
+    public static void write(List<EndpointHit> hits, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeByte(VERSION);
+        out.writeInt(hits.size());
+        for (EndpointHit hit : hits) {
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+            out.writeUTF(hit.getHitId() == null ? "" : hit.getHitId());
+        }
+        out.flush();
+    }
+
+    /**
+     * Читает кадр целиком; {@code maxBytes} - размер тела, если известен, иначе -1.
+     */
+    public static List<EndpointHit> read(InputStream inputStream, long maxBytes) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        byte version = in.readByte();
+        if (version != VERSION && version != VERSION_WITHOUT_HIT_ID) {
+            throw new IOException("Unsupported hit frame version: " + version);
+        }
+        boolean withHitId = version == VERSION;
+        int minHitBytes = (withHitId ? 4 : 3) * Short.BYTES + Long.BYTES;
+        int count = in.readInt();
+        if (count < 0 || maxBytes >= 0 && (long) count * minHitBytes > maxBytes) {
+            throw new IOException("Invalid hit count in frame: " + count);
+        }
+        List<EndpointHit> hits = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            EndpointHit.EndpointHitBuilder hit = EndpointHit.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC));
+            if (withHitId) {
+                String hitId = in.readUTF();
+                hit.hitId(hitId.isEmpty() ? null : hitId);
+            }
+            hits.add(hit.build());
+        }
+        return hits;
+    }
+}
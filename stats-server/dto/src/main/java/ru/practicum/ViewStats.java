@@ -5,12 +5,47 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.util.Comparator;
+
 @Builder
 @Getter
 @AllArgsConstructor
 @ToString
 public class ViewStats {
+    /**
+     * Порядок строк, как в Postgres при COLLATE "C" для UTF-8: по кодовым точкам. String.compareTo сравнивает
+     * символы UTF-16 и ставит символы вне BMP раньше U+E000..U+FFFF.
+     */
+    public static final Comparator<String> NAME_ORDER = ViewStats::compareCodePoints;
+    /**
+     * Порядок ответа /stats: по убыванию hits, при равенстве - по app и uri.
+     */
+    public static final Comparator<ViewStats> ORDER = Comparator
+            .comparing(ViewStats::getHits, Comparator.reverseOrder())
+            .thenComparing(ViewStats::getApp, NAME_ORDER)
+            .thenComparing(ViewStats::getUri, NAME_ORDER);
+
     private String app;
     private String uri;
     private Long hits;
+
+    private static int compareCodePoints(String left, String right) {
+        int length = Math.min(left.length(), right.length());
+        for (int i = 0; i < length; i++) {
+            char l = left.charAt(i);
+            char r = right.charAt(i);
+            if (l != r) {
+                return Integer.compare(codePointRank(l), codePointRank(r));
+            }
+        }
+        return Integer.compare(left.length(), right.length());
+    }
+
+    // Суррогаты переносятся выше U+E000..U+FFFF, остальные символы сохраняют порядок
+    private static int codePointRank(char c) {
+        if (c >= 0xE000) {
+            return c - 0x800;
+        }
+        return c >= 0xD800 ? c + 0x2000 : c;
+    }
 }
\ No newline at end of file
@@ -21,12 +21,22 @@ public class ViewsStatsRequest {
 
     private boolean unique;
 
+    private boolean exact;
+
+    private boolean stream;
+
     private String application;
 
     @Builder.Default
     private Integer limit = null;
 
+    private int offset;
+
     public boolean hasLimitCondition() {
         return limit != null && limit > 0;
     }
+
+    public boolean hasApplicationCondition() {
+        return application != null && !application.isBlank();
+    }
 }
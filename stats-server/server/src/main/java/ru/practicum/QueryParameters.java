@@ -0,0 +1,63 @@
+package ru.practicum;
+
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.support.SqlArrayValue;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Собирает параметры запросов с фильтрами {@code app_id = ?} и {@code uri_id = ANY(?)}: id uri передаются одним
+ * параметром-массивом, поэтому текст запроса не зависит ни от количества, ни от значений uri.
+ */
+public final class QueryParameters {
+    public static final String APP_CONDITION = "AND app_id = ? ";
+    public static final String URIS_CONDITION = "AND uri_id = ANY(?) ";
+
+    private final List<Object> values = new ArrayList<>();
+
+    public QueryParameters add(Object... parameters) {
+        values.addAll(Arrays.asList(parameters));
+        return this;
+    }
+
+    /**
+     * Условия фильтров в том же порядке, в каком {@link #addFilters} добавляет их параметры.
+     */
+    public static String conditions(boolean byApp, boolean byUris) {
+        return (byApp ? APP_CONDITION : "") + (byUris ? URIS_CONDITION : "");
+    }
+
+    /**
+     * Параметры фильтров; appId == null и пустой список uriIds означают отсутствие фильтра.
+     */
+    public QueryParameters addFilters(Integer appId, List<Integer> uriIds) {
+        if (appId != null) {
+            values.add(appId);
+        }
+        return addUriIds(uriIds);
+    }
+
+    public QueryParameters addUriIds(List<Integer> uriIds) {
+        if (!uriIds.isEmpty()) {
+            values.add(new SqlArrayValue("integer", uriIds.toArray()));
+        }
+        return this;
+    }
+
+    /**
+     * Параметры {@code LIMIT ? OFFSET ?}; без limit передаётся NULL, что для Postgres означает LIMIT ALL.
+     */
+    public QueryParameters addPage(ViewsStatsRequest request) {
+        Long limit = request.hasLimitCondition() ? Long.valueOf(request.getLimit()) : null;
+        values.add(new SqlParameterValue(Types.BIGINT, limit));
+        values.add((long) request.getOffset());
+        return this;
+    }
+
+    public Object[] toArray() {
+        return values.toArray();
+    }
+}
@@ -1,47 +1,218 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.dictionary.IpAddresses;
+import ru.practicum.export.CsvWriter;
+import ru.practicum.rollup.Granularity;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.InvalidParameterException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
 
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping(produces = MediaType.APPLICATION_JSON_VALUE)
 public class StatsController {
+    private static final String CSV = "text/csv";
+    private static final String RAW_INTERVAL = "raw";
+    private static final int MAX_NAME_LENGTH = 255;
+
     private final StatsService service;
+    private final ObjectMapper objectMapper;
+
+    @Value("${stats.timeseries.max-buckets:10000}")
+    private int maxTimeSeriesBuckets;
 
     @PostMapping("/hit")
     @ResponseStatus(code = HttpStatus.CREATED)
     public void hit(@RequestBody EndpointHit hit) {
         log.info("POST request to save information.");
-        service.saveHit(hit);
+        service.saveHit(validateHit(hit));
+    }
+
+    @PostMapping("/hit/batch")
+    @ResponseStatus(code = HttpStatus.CREATED)
+    public void hitBatch(@RequestBody List<EndpointHit> hits) {
+        log.info("POST request to save {} hits.", hits.size());
+        service.saveHits(hits.stream().map(this::validateHit).toList());
     }
 
     @GetMapping("/stats")
     public List<ViewStats> getStats(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
                                     @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
                                     @RequestParam(defaultValue = "") List<String> uris,
-                                    @RequestParam(defaultValue = "false") boolean unique) {
+                                    @RequestParam(required = false) String application,
+                                    @RequestParam(defaultValue = "false") boolean unique,
+                                    @RequestParam(defaultValue = "false") boolean exact,
+                                    @RequestParam(required = false) Integer limit,
+                                    @RequestParam(defaultValue = "0") int offset) {
         log.info("GET request to get all statistic.");
+        return service.getViewStatsList(toRequest(start, end, uris, application, unique, exact, limit, offset));
+    }
+
+    /**
+     * Тот же ответ, что и у {@link #getStats}, но элементы массива пишутся в ответ по мере чтения из БД.
+     */
+    @GetMapping(value = "/stats", params = "stream=true")
+    public void streamStats(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                            @RequestParam(defaultValue = "") List<String> uris,
+                            @RequestParam(required = false) String application,
+                            @RequestParam(defaultValue = "false") boolean unique,
+                            @RequestParam(defaultValue = "false") boolean exact,
+                            @RequestParam(required = false) Integer limit,
+                            @RequestParam(defaultValue = "0") int offset,
+                            HttpServletResponse response) throws IOException {
+        log.info("GET request to stream all statistic.");
+        ViewsStatsRequest request = toRequest(start, end, uris, application, unique, exact, limit, offset);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            // При ошибке чтения массив остаётся незакрытым, чтобы клиент не принял обрезанный ответ за полный
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.writeStartArray();
+            service.streamViewStats(request, viewStats -> {
+                try {
+                    generator.writeObject(viewStats);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Хиты по парам (app, uri) с шагом interval (minute, hour, day) за период [start, end].
+     */
+    @GetMapping("/stats/timeseries")
+    public List<ViewStatsBucket> getTimeSeries(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                               @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                               @RequestParam String interval,
+                                               @RequestParam(defaultValue = "") List<String> uris,
+                                               @RequestParam(required = false) String application,
+                                               @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("GET request to get statistic by {}.", interval);
+        ViewsStatsRequest request = toRequest(start, end, uris, application, unique, false, null, 0);
+        Granularity granularity = toGranularity(interval);
+        long buckets = granularity.bucketsBetween(start, end.plus(1, ChronoUnit.MICROS));
+        if (buckets > maxTimeSeriesBuckets) {
+            log.info("Too many buckets {} for interval {}", buckets, interval);
+            throw new InvalidParameterException("Period has " + buckets + " intervals, at most "
+                    + maxTimeSeriesBuckets + " allowed");
+        }
+        return service.getTimeSeries(request, granularity);
+    }
+
+    /**
+     * Выгрузка хитов за период [start, end] в CSV по мере чтения из БД. interval=raw - сырые хиты по возрастанию
+     * (created, id); minute, hour, day - хиты (или уникальные ip при unique) по интервалам по возрастанию начала
+     * интервала. Оборванная выгрузка продолжается с переданной позиции: для сырых хитов after и afterId - created
+     * и id последней полученной строки, для интервалов after - последний интервал, полученный целиком.
+     */
+    @GetMapping(value = "/stats/export", produces = CSV)
+    public void export(@RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                       @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                       @RequestParam(defaultValue = "raw") String interval,
+                       @RequestParam(defaultValue = "") List<String> uris,
+                       @RequestParam(required = false) String application,
+                       @RequestParam(defaultValue = "false") boolean unique,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                       LocalDateTime after,
+                       @RequestParam(defaultValue = "0") long afterId,
+                       HttpServletResponse response) throws IOException {
+        log.info("GET request to export statistic by {}.", interval);
+        boolean raw = RAW_INTERVAL.equalsIgnoreCase(interval);
+        Granularity granularity = raw ? null : toGranularity(interval);
+        if (!raw && after != null && granularity.next(granularity.floor(after)).isAfter(start)) {
+            start = granularity.next(granularity.floor(after));
+        }
+        ViewsStatsRequest request = toRequest(start, end, uris, application, unique, false, null, 0);
+        response.setContentType(CSV);
+        // При ошибке поток не закрывается: ответ обрывается без завершающего chunk, и клиент не примет
+        // обрезанную выгрузку за полную
+        CsvWriter csv = new CsvWriter(response.getOutputStream());
+        if (raw) {
+            csv.row("created", "id", "app", "uri", "ip");
+            service.exportHits(request, after != null ? after : start, after != null ? afterId : 0,
+                    hit -> csv.row(hit.getTimestamp(), hit.getId(), hit.getApp(), hit.getUri(), hit.getIp()));
+        } else {
+            csv.row("bucket", "app", "uri", "hits");
+            service.exportTimeSeries(request, granularity,
+                    bucket -> csv.row(bucket.getBucket(), bucket.getApp(), bucket.getUri(), bucket.getHits()));
+        }
+        csv.close();
+    }
+
+    private ViewsStatsRequest toRequest(LocalDateTime start, LocalDateTime end, List<String> uris, String application,
+                                        boolean unique, boolean exact, Integer limit, int offset) {
         if (end.isBefore(start)) {
             log.info("Uncorrected format of dates start {} и end {}", start, end);
             throw new InvalidParameterException("Uncorrected format of dates");
         }
-        return service.getViewStatsList(
-                ViewsStatsRequest.builder()
-                        .start(start)
-                        .end(end)
-                        .uris(uris)
-                        .unique(unique)
-                        .build()
-        );
+        if ((limit != null && limit < 0) || offset < 0) {
+            log.info("Negative limit {} or offset {}", limit, offset);
+            throw new InvalidParameterException("Limit and offset must not be negative");
+        }
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .application(application)
+                .unique(unique)
+                .exact(exact)
+                .limit(limit)
+                .offset(offset)
+                .build();
+    }
+
+    private Granularity toGranularity(String interval) {
+        try {
+            return Granularity.valueOf(interval.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.info("Unknown interval {}", interval);
+            throw new InvalidParameterException("Interval must be one of minute, hour, day");
+        }
+    }
+
+    /**
+     * Хит без app, uri или timestamp не запишется ни с какой попытки, поэтому отклоняется до записи,
+     * в том числе в буфер write-behind. Тела в JSON и в кадрах проверяются одинаково.
+     * Возвращает хит с ip в единой форме.
+     */
+    private EndpointHit validateHit(EndpointHit hit) {
+        if (isBlankOrTooLong(hit.getApp()) || isBlankOrTooLong(hit.getUri())) {
+            log.info("Invalid app {} or uri {}", hit.getApp(), hit.getUri());
+            throw new InvalidParameterException("App and uri must be non-blank and at most " + MAX_NAME_LENGTH
+                    + " characters");
+        }
+        if (hit.getTimestamp() == null) {
+            log.info("Hit without timestamp");
+            throw new InvalidParameterException("Timestamp is required");
+        }
+        if (!IpAddresses.isValid(hit.getIp())) {
+            log.info("Invalid ip address {}", hit.getIp());
+            throw new InvalidParameterException("Invalid ip address: " + hit.getIp());
+        }
+        return hit.toBuilder()
+                .ip(IpAddresses.canonical(hit.getIp()))
+                .build();
+    }
+
+    private static boolean isBlankOrTooLong(String value) {
+        return value == null || value.isBlank() || value.length() > MAX_NAME_LENGTH;
     }
 }
\ No newline at end of file
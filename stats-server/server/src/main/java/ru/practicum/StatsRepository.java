@@ -1,11 +1,72 @@
 package ru.practicum;
 
+import ru.practicum.hll.HyperLogLog;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface StatsRepository {
     void saveHit(EndpointHit hit);
 
+    void saveHits(List<EndpointHit> hits);
+
     List<ViewStats> getStats(ViewsStatsRequest request);
 
     List<ViewStats> getUniqueStats(ViewsStatsRequest request);
-}
\ No newline at end of file
+
+    /**
+     * Передаёт строки статистики в consumer по мере чтения, не собирая весь результат в памяти.
+     */
+    default void streamStats(ViewsStatsRequest request, Consumer<ViewStats> consumer) {
+        getStats(request).forEach(consumer);
+    }
+
+    default void streamUniqueStats(ViewsStatsRequest request, Consumer<ViewStats> consumer) {
+        getUniqueStats(request).forEach(consumer);
+    }
+
+    /**
+     * Скетчи уникальных ip по парам (app, uri) за период запроса без учёта страницы: скетчи соседних периодов
+     * объединяются в скетч их суммы. Пустой Optional - хранилище не ведёт скетчей.
+     */
+    default Optional<Map<AppUri, HyperLogLog>> getUniqueSketches(ViewsStatsRequest request) {
+        return Optional.empty();
+    }
+
+    /**
+     * Хиты по парам (app, uri) в интервалах interval, упорядоченные по app, uri и началу интервала;
+     * пустые интервалы не возвращаются.
+     */
+    List<ViewStatsBucket> getTimeSeries(ViewsStatsRequest request, Granularity interval);
+
+    /**
+     * Передаёт в consumer те же строки, что и {@link #getTimeSeries}, но упорядоченные по началу интервала,
+     * затем по app и uri.
+     */
+    default void exportTimeSeries(ViewsStatsRequest request, Granularity interval, Consumer<ViewStatsBucket> consumer) {
+        getTimeSeries(request, interval).stream()
+                .sorted(Comparator.comparing(ViewStatsBucket::getBucket)
+                        .thenComparing(ViewStatsBucket::getApp)
+                        .thenComparing(ViewStatsBucket::getUri))
+                .forEach(consumer);
+    }
+
+    /**
+     * Передаёт в consumer хиты периода запроса по возрастанию (created, id), начиная со следующего
+     * за (afterCreated, afterId).
+     */
+    void exportHits(ViewsStatsRequest request, LocalDateTime afterCreated, long afterId,
+                    Consumer<EndpointHitModel> consumer);
+
+    /**
+     * Передаёт в consumer все хиты с created не раньше from.
+     */
+    void streamHitsSince(LocalDateTime from, Consumer<EndpointHit> consumer);
+}
@@ -1,47 +1,634 @@
 package ru.practicum;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.bitmap.RoaringBitmap;
+import ru.practicum.bitmap.UniqueBitmapRepository;
+import ru.practicum.compaction.CompactionWatermark;
+import ru.practicum.dictionary.EncodedHit;
+import ru.practicum.dictionary.IpAddresses;
+import ru.practicum.dictionary.StatsDictionary;
+import ru.practicum.hll.HllSketchRepository;
+import ru.practicum.hll.HyperLogLog;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+import ru.practicum.rollup.RollupPlan;
+import ru.practicum.rollup.RollupQueryPlanner;
+
+import java.security.InvalidParameterException;
+import java.sql.PreparedStatement;
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.storage", havingValue = "jdbc", matchIfMissing = true)
 public class StatsRepositoryImpl implements StatsRepository {
+    private static final String INSERT_HIT_QUERY = "INSERT INTO stats (app_id, uri_id, ip, created) " +
+            "VALUES (?, ?, ?::inet, ?)";
+    private static final String UPSERT_ROLLUP_QUERY = "INSERT INTO stats_rollup (granularity, bucket, app_id, uri_id, hits) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (granularity, bucket, app_id, uri_id) DO UPDATE SET hits = stats_rollup.hits + EXCLUDED.hits";
+    // Группировка идёт по id, строки app и uri подставляются из словарей только для итоговых пар
+    private static final String RESOLVE_NAMES_TEMPLATE = "SELECT a.name AS app, u.uri AS uri, %2$s FROM (%1$s) AS h " +
+            "JOIN stats_app a ON a.id = h.app_id JOIN stats_uri u ON u.id = h.uri_id";
+    // Порядок совпадает с TopViewStats.ORDER, чтобы страницы по offset не пересекались: строки сравниваются
+    // побайтно (COLLATE "C"), как ViewStats.NAME_ORDER, а не по правилам сортировки БД
+    private static final String PAGE = " ORDER BY h.hits DESC, a.name COLLATE \"C\", u.uri COLLATE \"C\" " +
+            "LIMIT ? OFFSET ?";
+    private static final String TIME_SERIES_ORDER = " ORDER BY a.name COLLATE \"C\", u.uri COLLATE \"C\", h.bucket";
+    // Выгрузка идёт по времени, чтобы оборванную можно было продолжить с последнего интервала
+    private static final String EXPORT_ORDER = " ORDER BY h.bucket, a.name COLLATE \"C\", u.uri COLLATE \"C\"";
+    private static final String ROLLUP_STATS_TEMPLATE = String.format(RESOLVE_NAMES_TEMPLATE,
+            "SELECT app_id, uri_id, SUM(hits) AS hits FROM (" +
+            "SELECT app_id, uri_id, COUNT(ip) AS hits FROM stats " +
+            "WHERE ((created >= ? AND created < ?) OR (created >= ? AND created < ?)) %1$s GROUP BY app_id, uri_id " +
+            "UNION ALL " +
+            "SELECT app_id, uri_id, SUM(hits) AS hits FROM stats_rollup " +
+            "WHERE ((granularity = 'MINUTE' AND ((bucket >= ? AND bucket < ?) OR (bucket >= ? AND bucket < ?))) " +
+            "OR (granularity = 'HOUR' AND ((bucket >= ? AND bucket < ?) OR (bucket >= ? AND bucket < ?))) " +
+            "OR (granularity = 'DAY' AND bucket >= ? AND bucket < ?)) %1$s GROUP BY app_id, uri_id" +
+            ") AS hits_by_segment GROUP BY app_id, uri_id", "h.hits") + PAGE;
+    private static final String EDGE_IPS_TEMPLATE = String.format(RESOLVE_NAMES_TEMPLATE,
+            "SELECT DISTINCT app_id, uri_id, host(ip) AS ip FROM stats " +
+            "WHERE ((created >= ? AND created < ?) OR (created >= ? AND created < ?)) %1$s", "h.ip");
+    private static final String EDGE_IP_IDS_TEMPLATE = String.format(RESOLVE_NAMES_TEMPLATE,
+            "SELECT DISTINCT s.app_id, s.uri_id, i.id AS ip_id, CASE WHEN i.id IS NULL THEN s.ip END AS ip " +
+            "FROM stats s LEFT JOIN stats_ip i ON i.ip = s.ip " +
+            "WHERE ((s.created >= ? AND s.created < ?) OR (s.created >= ? AND s.created < ?)) %1$s",
+            "h.ip_id, host(h.ip) AS ip");
+    private static final String EXACT_UNIQUE_STATS_TEMPLATE = String.format(RESOLVE_NAMES_TEMPLATE,
+            "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits FROM stats " +
+            "WHERE created >= ? AND created <= ? %1$s GROUP BY app_id, uri_id", "h.hits") + PAGE;
+    // Участки плана не крупнее шага гистограммы, поэтому date_trunc относит каждую строку агрегата к одному интервалу
+    private static final String TIME_SERIES_TEMPLATE = String.format(RESOLVE_NAMES_TEMPLATE,
+            "SELECT app_id, uri_id, bucket, SUM(hits) AS hits FROM (" +
+            "SELECT app_id, uri_id, date_trunc('{interval}', created) AS bucket, COUNT(ip) AS hits FROM stats " +
+            "WHERE ((created >= ? AND created < ?) OR (created >= ? AND created < ?)) %1$s GROUP BY 1, 2, 3 " +
+            "UNION ALL " +
+            "SELECT app_id, uri_id, date_trunc('{interval}', bucket) AS bucket, SUM(hits) AS hits FROM stats_rollup " +
+            "WHERE ((granularity = 'MINUTE' AND ((bucket >= ? AND bucket < ?) OR (bucket >= ? AND bucket < ?))) " +
+            "OR (granularity = 'HOUR' AND ((bucket >= ? AND bucket < ?) OR (bucket >= ? AND bucket < ?))) " +
+            "OR (granularity = 'DAY' AND bucket >= ? AND bucket < ?)) %1$s GROUP BY 1, 2, 3" +
+            ") AS hits_by_segment GROUP BY app_id, uri_id, bucket", "h.bucket, h.hits");
+    private static final String UNIQUE_TIME_SERIES_TEMPLATE = String.format(RESOLVE_NAMES_TEMPLATE,
+            "SELECT app_id, uri_id, date_trunc('{interval}', created) AS bucket, COUNT(DISTINCT ip) AS hits FROM stats " +
+            "WHERE created >= ? AND created < ? %1$s GROUP BY 1, 2, 3", "h.bucket, h.hits");
+    // Ключ (created, id) однозначно задаёт позицию, с которой продолжается оборванная выгрузка
+    private static final String EXPORT_HITS_TEMPLATE = "SELECT s.id, s.created, a.name AS app, u.uri AS uri, " +
+            "host(s.ip) AS ip FROM stats s JOIN stats_app a ON a.id = s.app_id JOIN stats_uri u ON u.id = s.uri_id " +
+            "WHERE s.created >= ? AND s.created <= ? AND (s.created, s.id) > (?, ?) %1$s ORDER BY s.created, s.id";
+    private static final String HITS_SINCE_QUERY = "SELECT a.name AS app, u.uri AS uri, host(s.ip) AS ip, s.created " +
+            "FROM stats s JOIN stats_app a ON a.id = s.app_id JOIN stats_uri u ON u.id = s.uri_id WHERE s.created >= ?";
+    private static final Statements ROLLUP_STATS_QUERIES = new Statements(ROLLUP_STATS_TEMPLATE);
+    private static final Statements EDGE_IPS_QUERIES = new Statements(EDGE_IPS_TEMPLATE);
+    private static final Statements EDGE_IP_IDS_QUERIES = new Statements(EDGE_IP_IDS_TEMPLATE);
+    private static final Statements EXACT_UNIQUE_STATS_QUERIES = new Statements(EXACT_UNIQUE_STATS_TEMPLATE);
+    private static final Map<Granularity, Statements> TIME_SERIES_QUERIES =
+            byInterval(TIME_SERIES_TEMPLATE + TIME_SERIES_ORDER);
+    private static final Map<Granularity, Statements> UNIQUE_TIME_SERIES_QUERIES =
+            byInterval(UNIQUE_TIME_SERIES_TEMPLATE + TIME_SERIES_ORDER);
+    private static final Map<Granularity, Statements> EXPORT_TIME_SERIES_QUERIES =
+            byInterval(TIME_SERIES_TEMPLATE + EXPORT_ORDER);
+    private static final Map<Granularity, Statements> EXPORT_UNIQUE_TIME_SERIES_QUERIES =
+            byInterval(UNIQUE_TIME_SERIES_TEMPLATE + EXPORT_ORDER);
+    private static final Statements EXPORT_HITS_QUERIES = new Statements(EXPORT_HITS_TEMPLATE);
+    private static final RowMapper<ViewStatsBucket> VIEW_STATS_BUCKET_MAPPER = (rs, rowNum) -> ViewStatsBucket.builder()
+            .app(rs.getString("app"))
+            .uri(rs.getString("uri"))
+            .bucket(rs.getTimestamp("bucket").toLocalDateTime())
+            .hits(rs.getLong("hits"))
+            .build();
+    private static final Comparator<ViewStatsBucket> TIME_SERIES_BUCKET_ORDER = Comparator
+            .comparing(ViewStatsBucket::getApp, ViewStats.NAME_ORDER)
+            .thenComparing(ViewStatsBucket::getUri, ViewStats.NAME_ORDER)
+            .thenComparing(ViewStatsBucket::getBucket);
+    private static final Comparator<RollupKey> ROLLUP_KEY_ORDER = Comparator
+            .comparing(RollupKey::granularity)
+            .thenComparing(RollupKey::bucket)
+            .thenComparingInt(RollupKey::appId)
+            .thenComparingInt(RollupKey::uriId);
+
     private final JdbcTemplate jdbcTemplate;
     private final ViewStatsMapper viewStatsMapper;
+    private final RollupQueryPlanner rollupQueryPlanner;
+    private final HllSketchRepository hllSketchRepository;
+    private final StatsDictionary statsDictionary;
+
+    @Autowired(required = false)
+    private UniqueBitmapRepository uniqueBitmapRepository;
+
+    @Autowired(required = false)
+    private CompactionWatermark compactionWatermark;
+
+    @Value("${stats.jdbc.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${stats.streaming.fetch-size:1000}")
+    private int fetchSize;
 
     @Override
+    @Transactional
     public void saveHit(EndpointHit hit) {
-        jdbcTemplate.update("INSERT INTO stats (app, uri, ip, created) VALUES (?, ?, ?, ?)",
-                hit.getApp(), hit.getUri(), hit.getIp(), Timestamp.valueOf(hit.getTimestamp()));
+        List<EncodedHit> encoded = statsDictionary.encode(List.of(hit));
+        EncodedHit encodedHit = encoded.get(0);
+        jdbcTemplate.update(INSERT_HIT_QUERY, encodedHit.appId(), encodedHit.uriId(), encodedHit.ip(),
+                Timestamp.valueOf(encodedHit.timestamp()));
+        updateRollups(encoded);
+        updateUniques(encoded);
     }
 
     @Override
-    public List<ViewStats> getStats(ViewsStatsRequest request) {
-        String query = "SELECT app, uri, COUNT (ip) AS hits FROM stats WHERE (created >= ? AND created <= ?) ";
-        if (!request.getUris().isEmpty()) {
-            query += createUrisQuery(request.getUris());
+    @Transactional
+    public void saveHits(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
         }
-        query += " GROUP BY app, uri ORDER BY hits DESC";
-        return jdbcTemplate.query(query, viewStatsMapper, request.getStart(), request.getEnd());
+        List<EncodedHit> encoded = statsDictionary.encode(hits);
+        jdbcTemplate.batchUpdate(INSERT_HIT_QUERY, encoded, batchSize, (ps, hit) -> {
+            ps.setInt(1, hit.appId());
+            ps.setInt(2, hit.uriId());
+            ps.setString(3, hit.ip());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.timestamp()));
+        });
+        updateRollups(encoded);
+        updateUniques(encoded);
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<ViewStats> getStats(ViewsStatsRequest request) {
+        compactedBefore(request);
+        return statsQuery(request)
+                .map(query -> jdbcTemplate.query(query.sql(), viewStatsMapper, query.parameters()))
+                .orElse(List.of());
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void streamStats(ViewsStatsRequest request, Consumer<ViewStats> consumer) {
+        compactedBefore(request);
+        statsQuery(request).ifPresent(query -> stream(query, consumer));
     }
 
     @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     public List<ViewStats> getUniqueStats(ViewsStatsRequest request) {
-        String query = "SELECT app, uri, COUNT (DISTINCT ip) AS hits FROM stats WHERE (created >= ? AND created <= ?) ";
-        if (!request.getUris().isEmpty()) {
-            query += createUrisQuery(request.getUris());
+        compactedBefore(request);
+        return uniqueStats(request);
+    }
+
+    private List<ViewStats> uniqueStats(ViewsStatsRequest request) {
+        if (usesBitmaps(request)) {
+            return bitmapUniqueStats(request);
+        }
+        if (!usesSketches(request)) {
+            return exactUniqueStatsQuery(request)
+                    .map(query -> jdbcTemplate.query(query.sql(), viewStatsMapper, query.parameters()))
+                    .orElse(List.of());
         }
-        query += " GROUP BY app, uri ORDER BY hits DESC";
-        return jdbcTemplate.query(query, viewStatsMapper, request.getStart(), request.getEnd());
+        return TopViewStats.page(uniqueSketches(request).entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(entry.getKey().app())
+                        .uri(entry.getKey().uri())
+                        .hits(entry.getValue().estimate())
+                        .build()), request);
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Optional<Map<AppUri, HyperLogLog>> getUniqueSketches(ViewsStatsRequest request) {
+        compactedBefore(request);
+        return Optional.of(uniqueSketches(request));
     }
 
+    /**
+     * Скетчи целых часов периода и ip сырых хитов по краям; период без целого часа читается из сырых хитов.
+     */
+    private Map<AppUri, HyperLogLog> uniqueSketches(ViewsStatsRequest request) {
+        Optional<Filter> filter = filter(request);
+        if (filter.isEmpty()) {
+            return new TreeMap<>();
+        }
+        LocalDateTime from = request.getStart();
+        LocalDateTime to = exclusiveEnd(request.getEnd());
+        LocalDateTime sketchesFrom = Granularity.HOUR.ceil(from);
+        LocalDateTime sketchesTo = Granularity.HOUR.floor(to);
+        if (!sketchesFrom.isBefore(sketchesTo)) {
+            sketchesFrom = to;
+            sketchesTo = to;
+        }
+        Map<AppUri, HyperLogLog> sketches = hllSketchRepository.mergeSketches(sketchesFrom, sketchesTo,
+                filter.get().appId(), filter.get().uriIds());
+        Object[] parameters = new QueryParameters()
+                .add(Timestamp.valueOf(from), Timestamp.valueOf(sketchesFrom))
+                .add(Timestamp.valueOf(sketchesTo), Timestamp.valueOf(to))
+                .addFilters(filter.get().appId(), filter.get().uriIds())
+                .toArray();
+        jdbcTemplate.query(EDGE_IPS_QUERIES.get(filter.get()), rs -> {
+            AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+            sketches.computeIfAbsent(key, k -> hllSketchRepository.newSketch())
+                    .add(IpAddresses.canonical(rs.getString("ip")));
+        }, parameters);
+        return sketches;
+    }
+
+    /**
+     * Точный подсчёт по суточным битовым картам: целые сутки периода, начиная с первых полных в картах,
+     * объединяются из карт, ip остальной части периода добавляются из сырых хитов. Ip без id в stats_ip
+     * не встречались с включения карт, поэтому ни в одной карте их нет, и они считаются отдельно.
+     */
+    private List<ViewStats> bitmapUniqueStats(ViewsStatsRequest request) {
+        Optional<Filter> filter = filter(request);
+        if (filter.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime from = request.getStart();
+        LocalDateTime to = exclusiveEnd(request.getEnd());
+        LocalDateTime daysFrom = bitmapDaysFrom(from);
+        LocalDateTime daysTo = Granularity.DAY.floor(to);
+        Map<AppUri, RoaringBitmap> bitmaps = uniqueBitmapRepository.mergeBitmaps(daysFrom.toLocalDate(),
+                daysTo.toLocalDate(), filter.get().appId(), filter.get().uriIds());
+        Map<AppUri, Set<String>> unknownIps = new HashMap<>();
+        Object[] parameters = new QueryParameters()
+                .add(Timestamp.valueOf(from), Timestamp.valueOf(daysFrom))
+                .add(Timestamp.valueOf(daysTo), Timestamp.valueOf(to))
+                .addFilters(filter.get().appId(), filter.get().uriIds())
+                .toArray();
+        jdbcTemplate.query(EDGE_IP_IDS_QUERIES.get(filter.get()), rs -> {
+            AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+            RoaringBitmap bitmap = bitmaps.computeIfAbsent(key, k -> new RoaringBitmap());
+            int ipId = rs.getInt("ip_id");
+            if (rs.wasNull()) {
+                unknownIps.computeIfAbsent(key, k -> new HashSet<>()).add(rs.getString("ip"));
+            } else {
+                bitmap.add(ipId);
+            }
+        }, parameters);
+
+        return TopViewStats.page(bitmaps.entrySet().stream()
+                .map(entry -> ViewStats.builder()
+                        .app(entry.getKey().app())
+                        .uri(entry.getKey().uri())
+                        .hits(entry.getValue().cardinality()
+                                + unknownIps.getOrDefault(entry.getKey(), Set.of()).size())
+                        .build()), request);
+    }
+
+    /**
+     * Точный подсчёт читается курсором; оценка по скетчам и так собирается в памяти по одному скетчу на пару
+     * (app, uri), поэтому отдаётся готовым списком.
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void streamUniqueStats(ViewsStatsRequest request, Consumer<ViewStats> consumer) {
+        compactedBefore(request);
+        if (usesSketches(request) || usesBitmaps(request)) {
+            uniqueStats(request).forEach(consumer);
+            return;
+        }
+        exactUniqueStatsQuery(request).ifPresent(query -> stream(query, consumer));
+    }
+
+    /**
+     * Суммы берутся из агрегатов с шагом не крупнее interval и сырых краёв; уникальные ip считаются точно
+     * по сырым хитам за один проход, а до границы сжатия оцениваются по часовым скетчам.
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<ViewStatsBucket> getTimeSeries(ViewsStatsRequest request, Granularity interval) {
+        Optional<LocalDateTime> watermark = compactedBefore(request, interval);
+        if (watermark.isEmpty() || !request.isUnique()) {
+            return timeSeriesQuery(request, interval, TIME_SERIES_QUERIES, UNIQUE_TIME_SERIES_QUERIES)
+                    .map(query -> jdbcTemplate.query(query.sql(), VIEW_STATS_BUCKET_MAPPER, query.parameters()))
+                    .orElse(List.of());
+        }
+        List<ViewStatsBucket> buckets = new ArrayList<>();
+        sketchTimeSeries(request, interval, watermark.get(), buckets::add);
+        afterCompaction(request, watermark.get())
+                .flatMap(tail -> timeSeriesQuery(tail, interval, TIME_SERIES_QUERIES, UNIQUE_TIME_SERIES_QUERIES))
+                .ifPresent(query -> buckets.addAll(
+                        jdbcTemplate.query(query.sql(), VIEW_STATS_BUCKET_MAPPER, query.parameters())));
+        buckets.sort(TIME_SERIES_BUCKET_ORDER);
+        return buckets;
+    }
+
+    /**
+     * Уникальные до границы сжатия выгружаются по скетчам первыми: все их интервалы раньше интервалов
+     * сырых хитов, поэтому выгрузка остаётся упорядоченной по началу интервала.
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportTimeSeries(ViewsStatsRequest request, Granularity interval, Consumer<ViewStatsBucket> consumer) {
+        Optional<LocalDateTime> watermark = compactedBefore(request, interval);
+        Optional<ViewsStatsRequest> rest = Optional.of(request);
+        if (watermark.isPresent() && request.isUnique()) {
+            sketchTimeSeries(request, interval, watermark.get(), consumer);
+            rest = afterCompaction(request, watermark.get());
+        }
+        rest.flatMap(tail -> timeSeriesQuery(tail, interval, EXPORT_TIME_SERIES_QUERIES,
+                        EXPORT_UNIQUE_TIME_SERIES_QUERIES))
+                .ifPresent(query -> streamRows(query, rs -> consumer.accept(
+                        VIEW_STATS_BUCKET_MAPPER.mapRow(rs, rs.getRow()))));
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportHits(ViewsStatsRequest request, LocalDateTime afterCreated, long afterId,
+                           Consumer<EndpointHitModel> consumer) {
+        LocalDateTime from = afterCreated.isAfter(request.getStart()) ? afterCreated : request.getStart();
+        watermarkAfter(from).ifPresent(watermark -> {
+            throw new InvalidParameterException("Raw hits before " + watermark + " are compacted, "
+                    + "export them by hour or day");
+        });
+        filter(request).ifPresent(filter -> {
+            Object[] parameters = new QueryParameters()
+                    .add(Timestamp.valueOf(request.getStart()), Timestamp.valueOf(request.getEnd()))
+                    .add(Timestamp.valueOf(afterCreated), afterId)
+                    .addFilters(filter.appId(), filter.uriIds())
+                    .toArray();
+            streamRows(new StatsQuery(EXPORT_HITS_QUERIES.get(filter), parameters), rs ->
+                    consumer.accept(EndpointHitModel.builder()
+                            .id(rs.getLong("id"))
+                            .timestamp(rs.getTimestamp("created").toLocalDateTime())
+                            .app(rs.getString("app"))
+                            .uri(rs.getString("uri"))
+                            .ip(rs.getString("ip"))
+                            .build()));
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamHitsSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        StatsQuery query = new StatsQuery(HITS_SINCE_QUERY, new Object[]{Timestamp.valueOf(from)});
+        streamRows(query, rs -> consumer.accept(EndpointHit.builder()
+                .app(rs.getString("app"))
+                .uri(rs.getString("uri"))
+                .ip(IpAddresses.canonical(rs.getString("ip")))
+                .timestamp(rs.getTimestamp("created").toLocalDateTime())
+                .build()));
+    }
+
+    private Optional<StatsQuery> statsQuery(ViewsStatsRequest request) {
+        return filter(request).map(filter -> {
+            RollupPlan plan = rollupQueryPlanner.plan(request.getStart(), exclusiveEnd(request.getEnd()));
+            Object[] parameters = new QueryParameters()
+                    .add(plan.rawParameters())
+                    .addFilters(filter.appId(), filter.uriIds())
+                    .add(plan.rollupParameters())
+                    .addFilters(filter.appId(), filter.uriIds())
+                    .addPage(request)
+                    .toArray();
+            return new StatsQuery(ROLLUP_STATS_QUERIES.get(filter), parameters);
+        });
+    }
+
+    private Optional<StatsQuery> timeSeriesQuery(ViewsStatsRequest request, Granularity interval,
+                                                 Map<Granularity, Statements> totals,
+                                                 Map<Granularity, Statements> unique) {
+        return filter(request).map(filter -> {
+            LocalDateTime to = exclusiveEnd(request.getEnd());
+            QueryParameters parameters = new QueryParameters();
+            if (request.isUnique()) {
+                parameters.add(Timestamp.valueOf(request.getStart()), Timestamp.valueOf(to))
+                        .addFilters(filter.appId(), filter.uriIds());
+                return new StatsQuery(unique.get(interval).get(filter), parameters.toArray());
+            }
+            RollupPlan plan = rollupQueryPlanner.plan(request.getStart(), to, interval);
+            parameters.add(plan.rawParameters())
+                    .addFilters(filter.appId(), filter.uriIds())
+                    .add(plan.rollupParameters())
+                    .addFilters(filter.appId(), filter.uriIds());
+            return new StatsQuery(totals.get(interval).get(filter), parameters.toArray());
+        });
+    }
+
+    /**
+     * Уникальные по интервалам часть периода до границы сжатия: интервалы не мельче часа, граница - начало
+     * суток, поэтому каждый интервал целиком до неё или после.
+     */
+    private void sketchTimeSeries(ViewsStatsRequest request, Granularity interval, LocalDateTime watermark,
+                                  Consumer<ViewStatsBucket> consumer) {
+        filter(request).ifPresent(filter -> {
+            LocalDateTime to = exclusiveEnd(request.getEnd());
+            hllSketchRepository.mergeSketchesByInterval(request.getStart(), to.isBefore(watermark) ? to : watermark,
+                    interval, filter.appId(), filter.uriIds(), (bucket, sketches) ->
+                            sketches.forEach((key, sketch) -> consumer.accept(ViewStatsBucket.builder()
+                                    .app(key.app())
+                                    .uri(key.uri())
+                                    .bucket(bucket)
+                                    .hits(sketch.estimate())
+                                    .build())));
+        });
+    }
+
+    private Optional<ViewsStatsRequest> afterCompaction(ViewsStatsRequest request, LocalDateTime watermark) {
+        return request.getEnd().isBefore(watermark)
+                ? Optional.empty()
+                : Optional.of(request.toBuilder().start(watermark).build());
+    }
+
+    private Optional<StatsQuery> exactUniqueStatsQuery(ViewsStatsRequest request) {
+        return filter(request).map(filter -> {
+            Object[] parameters = new QueryParameters()
+                    .add(Timestamp.valueOf(request.getStart()), Timestamp.valueOf(request.getEnd()))
+                    .addFilters(filter.appId(), filter.uriIds())
+                    .addPage(request)
+                    .toArray();
+            return new StatsQuery(EXACT_UNIQUE_STATS_QUERIES.get(filter), parameters);
+        });
+    }
+
+    /**
+     * Id app и uri из фильтров запроса либо пустой Optional, если под фильтр не попадает ни один хит:
+     * app или ни один из uri не встречались в хитах.
+     */
+    private Optional<Filter> filter(ViewsStatsRequest request) {
+        Integer appId = null;
+        if (request.hasApplicationCondition()) {
+            Optional<Integer> found = statsDictionary.findAppId(request.getApplication());
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            appId = found.get();
+        }
+        List<Integer> uriIds = statsDictionary.findUriIds(request.getUris());
+        if (!request.getUris().isEmpty() && uriIds.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Filter(appId, uriIds));
+    }
+
+    /**
+     * Граница сжатия, если период начинается до неё. Сырые хиты и минутные агрегаты до границы удалены, поэтому
+     * такой период должен начинаться с целого часа, а если и заканчивается до границы - целым часом; точные
+     * уникальные до границы считаются только по суточным битовым картам и требуют целых суток в картах.
+     * Период, который нельзя посчитать по оставшимся данным, отклоняется, а не меняется.
+     */
+    private Optional<LocalDateTime> compactedBefore(ViewsStatsRequest request) {
+        Optional<LocalDateTime> watermark = watermarkAfter(request.getStart());
+        watermark.ifPresent(boundary -> checkCompacted(request, boundary));
+        return watermark;
+    }
+
+    private Optional<LocalDateTime> watermarkAfter(LocalDateTime start) {
+        return compactionWatermark == null ? Optional.empty() : compactionWatermark.get().filter(start::isBefore);
+    }
+
+    private Optional<LocalDateTime> compactedBefore(ViewsStatsRequest request, Granularity interval) {
+        Optional<LocalDateTime> watermark = compactedBefore(request);
+        if (watermark.isPresent() && interval == Granularity.MINUTE) {
+            throw new InvalidParameterException("Minute intervals before " + watermark.get() + " are compacted, "
+                    + "use hour or day");
+        }
+        return watermark;
+    }
+
+    private void checkCompacted(ViewsStatsRequest request, LocalDateTime watermark) {
+        boolean exact = request.isUnique() && request.isExact();
+        if (exact && (uniqueBitmapRepository == null
+                || request.getStart().isBefore(uniqueBitmapRepository.validFrom().atStartOfDay()))) {
+            throw new InvalidParameterException("Exact unique hits before " + watermark + " are compacted "
+                    + "and not covered by unique bitmaps");
+        }
+        Granularity unit = exact ? Granularity.DAY : Granularity.HOUR;
+        LocalDateTime to = exclusiveEnd(request.getEnd());
+        if (!unit.floor(request.getStart()).equals(request.getStart())
+                || request.getEnd().isBefore(watermark) && !unit.floor(to).equals(to)) {
+            throw new InvalidParameterException("Periods before " + watermark + " are compacted and must start "
+                    + "and end on whole " + (exact ? "days" : "hours"));
+        }
+    }
+
+    /**
+     * Точный подсчёт по битовым картам возможен, если они включены и в периоде есть хотя бы одни целые сутки,
+     * полностью попадающие в карты.
+     */
+    private boolean usesBitmaps(ViewsStatsRequest request) {
+        if (uniqueBitmapRepository == null || !request.isExact()) {
+            return false;
+        }
+        LocalDateTime daysTo = Granularity.DAY.floor(exclusiveEnd(request.getEnd()));
+        return bitmapDaysFrom(request.getStart()).isBefore(daysTo);
+    }
+
+    private LocalDateTime bitmapDaysFrom(LocalDateTime start) {
+        LocalDateTime validFrom = uniqueBitmapRepository.validFrom().atStartOfDay();
+        LocalDateTime daysFrom = Granularity.DAY.ceil(start);
+        return daysFrom.isBefore(validFrom) ? validFrom : daysFrom;
+    }
+
+    /**
+     * Оценка по часовым скетчам возможна, если в периоде есть хотя бы один целый час.
+     */
+    private boolean usesSketches(ViewsStatsRequest request) {
+        LocalDateTime sketchesFrom = Granularity.HOUR.ceil(request.getStart());
+        LocalDateTime sketchesTo = Granularity.HOUR.floor(exclusiveEnd(request.getEnd()));
+        return !request.isExact() && sketchesFrom.isBefore(sketchesTo);
+    }
+
+    /**
+     * Читает результат курсором по fetchSize строк. Драйвер Postgres использует курсор только
+     * вне режима autocommit, поэтому вызывается в транзакции.
+     */
+    private void stream(StatsQuery query, Consumer<ViewStats> consumer) {
+        streamRows(query, rs -> consumer.accept(viewStatsMapper.mapRow(rs, rs.getRow())));
+    }
+
+    private void streamRows(StatsQuery query, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(query.sql());
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(query.parameters()).setValues(statement);
+            return statement;
+        }, handler);
+    }
+
+    private void updateUniques(List<EncodedHit> hits) {
+        hllSketchRepository.addHits(hits);
+        if (uniqueBitmapRepository != null) {
+            uniqueBitmapRepository.addHits(hits);
+        }
+    }
+
+    private void updateRollups(List<EncodedHit> hits) {
+        Map<RollupKey, Long> increments = new TreeMap<>(ROLLUP_KEY_ORDER);
+        for (EncodedHit hit : hits) {
+            for (Granularity granularity : Granularity.values()) {
+                RollupKey key = new RollupKey(granularity, granularity.floor(hit.timestamp()), hit.appId(), hit.uriId());
+                increments.merge(key, 1L, Long::sum);
+            }
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP_QUERY, increments.entrySet(), batchSize, (ps, increment) -> {
+            RollupKey key = increment.getKey();
+            ps.setString(1, key.granularity().name());
+            ps.setTimestamp(2, Timestamp.valueOf(key.bucket()));
+            ps.setInt(3, key.appId());
+            ps.setInt(4, key.uriId());
+            ps.setLong(5, increment.getValue());
+        });
+    }
+
+    private LocalDateTime exclusiveEnd(LocalDateTime end) {
+        return end.plus(1, ChronoUnit.MICROS);
+    }
+
+    private static Map<Granularity, Statements> byInterval(String template) {
+        Map<Granularity, Statements> statements = new EnumMap<>(Granularity.class);
+        for (Granularity interval : Granularity.values()) {
+            statements.put(interval, new Statements(template.replace("{interval}", interval.sqlUnit())));
+        }
+        return statements;
+    }
+
+    private record Filter(Integer appId, List<Integer> uriIds) {
+    }
+
+    /**
+     * Варианты запроса для каждого сочетания фильтров, подставленных вместо %1$s.
+     */
+    private record Statements(String all, String byApp, String byUris, String byAppAndUris) {
+        Statements(String template) {
+            this(template.replace("%1$s", QueryParameters.conditions(false, false)),
+                    template.replace("%1$s", QueryParameters.conditions(true, false)),
+                    template.replace("%1$s", QueryParameters.conditions(false, true)),
+                    template.replace("%1$s", QueryParameters.conditions(true, true)));
+        }
+
+        String get(Filter filter) {
+            if (filter.appId() == null) {
+                return filter.uriIds().isEmpty() ? all : byUris;
+            }
+            return filter.uriIds().isEmpty() ? byApp : byAppAndUris;
+        }
+    }
+
+    private record StatsQuery(String sql, Object[] parameters) {
+    }
 
-    private String createUrisQuery(List<String> uris) {
-        StringBuilder result = new StringBuilder("AND uri IN ('");
-        result.append(String.join("', '", uris));
-        return result.append("') ").toString();
+    private record RollupKey(Granularity granularity, LocalDateTime bucket, int appId, int uriId) {
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,25 @@
 package ru.practicum;
 
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveHit(EndpointHit hit);
 
+    void saveHits(List<EndpointHit> hits);
+
     List<ViewStats> getViewStatsList(ViewsStatsRequest request);
-}
\ No newline at end of file
+
+    void streamViewStats(ViewsStatsRequest request, Consumer<ViewStats> consumer);
+
+    List<ViewStatsBucket> getTimeSeries(ViewsStatsRequest request, Granularity interval);
+
+    void exportTimeSeries(ViewsStatsRequest request, Granularity interval, Consumer<ViewStatsBucket> consumer);
+
+    void exportHits(ViewsStatsRequest request, LocalDateTime afterCreated, long afterId,
+                    Consumer<EndpointHitModel> consumer);
+}
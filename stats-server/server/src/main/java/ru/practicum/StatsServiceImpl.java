@@ -1,26 +1,199 @@
 package ru.practicum;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.practicum.admission.HitAdmissionLimiter;
+import ru.practicum.buffer.FlushListener;
+import ru.practicum.buffer.WriteBehindHitBuffer;
+import ru.practicum.cache.StatsResponseCache;
+import ru.practicum.column.ColumnarHitStore;
+import ru.practicum.dedup.HitDeduplicator;
+import ru.practicum.incremental.IncrementalStatsQuery;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+import ru.practicum.window.SlidingWindowCounters;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
     private final StatsRepository statRepository;
 
+    @Autowired(required = false)
+    private WriteBehindHitBuffer hitBuffer;
+
+    @Autowired(required = false)
+    private SlidingWindowCounters slidingWindow;
+
+    @Autowired(required = false)
+    private ColumnarHitStore columnarStore;
+
+    @Autowired(required = false)
+    private StatsResponseCache responseCache;
+
+    @Autowired(required = false)
+    private HitDeduplicator hitDeduplicator;
+
+    @Autowired(required = false)
+    private HitAdmissionLimiter admissionLimiter;
+
+    @Autowired(required = false)
+    private IncrementalStatsQuery incrementalQuery;
+
+    /**
+     * Хиты, записанные через буфер write-behind, учитываются после сброса в репозиторий.
+     */
+    @PostConstruct
+    void listenToHitBuffer() {
+        if (hitBuffer != null) {
+            hitBuffer.setListener(new FlushListener() {
+                @Override
+                public void stored(List<EndpointHit> hits) {
+                    StatsServiceImpl.this.stored(hits);
+                }
+
+                @Override
+                public void dropped(List<EndpointHit> hits) {
+                    release(hits, false);
+                }
+            });
+        }
+    }
+
     @Override
     public void saveHit(EndpointHit hit) {
-        statRepository.saveHit(hit);
+        save(List.of(hit), accepted -> statRepository.saveHit(hit));
+    }
+
+    @Override
+    public void saveHits(List<EndpointHit> hits) {
+        save(hits, statRepository::saveHits);
     }
 
     @Override
     public List<ViewStats> getViewStatsList(ViewsStatsRequest request) {
+        if (responseCache != null) {
+            return responseCache.get(request, this::computeViewStats);
+        }
+        return computeViewStats(request);
+    }
+
+    @Override
+    public void streamViewStats(ViewsStatsRequest request, Consumer<ViewStats> consumer) {
+        Optional<List<ViewStats>> inMemory = queryInMemory(request);
+        if (inMemory.isPresent()) {
+            inMemory.get().forEach(consumer);
+            return;
+        }
+        if (request.isUnique()) {
+            statRepository.streamUniqueStats(request, consumer);
+            return;
+        }
+        statRepository.streamStats(request, consumer);
+    }
+
+    @Override
+    public List<ViewStatsBucket> getTimeSeries(ViewsStatsRequest request, Granularity interval) {
+        return statRepository.getTimeSeries(request, interval);
+    }
+
+    @Override
+    public void exportTimeSeries(ViewsStatsRequest request, Granularity interval, Consumer<ViewStatsBucket> consumer) {
+        statRepository.exportTimeSeries(request, interval, consumer);
+    }
+
+    @Override
+    public void exportHits(ViewsStatsRequest request, LocalDateTime afterCreated, long afterId,
+                           Consumer<EndpointHitModel> consumer) {
+        statRepository.exportHits(request, afterCreated, afterId, consumer);
+    }
+
+    private List<ViewStats> computeViewStats(ViewsStatsRequest request) {
+        Optional<List<ViewStats>> inMemory = queryInMemory(request);
+        if (inMemory.isPresent()) {
+            return inMemory.get();
+        }
         if (request.isUnique()) {
             return statRepository.getUniqueStats(request);
         }
 
         return statRepository.getStats(request);
     }
-}
\ No newline at end of file
+
+    /**
+     * Повторы с уже сохранёнными или сохраняемыми hitId отбрасываются до записи. hitId запоминается, а хит
+     * учитывается в памяти, только когда он записан в репозиторий: при прямой записи - сразу, при записи
+     * через буфер write-behind - после сброса. Хит, не принятый или потерянный буфером, клиент может повторить.
+     */
+    private void save(List<EndpointHit> hits, Consumer<List<EndpointHit>> repositoryWrite) {
+        List<EndpointHit> accepted = hitDeduplicator != null ? hitDeduplicator.claim(hits) : hits;
+        if (accepted.isEmpty()) {
+            return;
+        }
+        try {
+            write(accepted, () -> {
+                repositoryWrite.accept(accepted);
+                stored(accepted);
+            });
+        } catch (RuntimeException e) {
+            release(accepted, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Без ограничителя хиты пишет буфер write-behind, если он включён, иначе репозиторий. С ограничителем хиты
+     * пишутся в репозиторий, а буфер принимает только хиты сверх предела.
+     */
+    private void write(List<EndpointHit> hits, Runnable repositoryWrite) {
+        Runnable buffered = hitBuffer != null ? () -> hitBuffer.addAll(hits) : null;
+        if (admissionLimiter != null) {
+            admissionLimiter.write(repositoryWrite, buffered);
+        } else if (buffered != null) {
+            buffered.run();
+        } else {
+            repositoryWrite.run();
+        }
+    }
+
+    private void stored(List<EndpointHit> hits) {
+        release(hits, true);
+        recordInMemory(hits);
+    }
+
+    private void release(List<EndpointHit> hits, boolean stored) {
+        if (hitDeduplicator != null) {
+            hitDeduplicator.release(hits, stored);
+        }
+    }
+
+    private void recordInMemory(List<EndpointHit> hits) {
+        if (slidingWindow != null) {
+            slidingWindow.record(hits);
+        }
+        if (columnarStore != null) {
+            columnarStore.record(hits);
+        }
+    }
+
+    /**
+     * Сначала скользящее окно, затем колоночное хранилище, затем сохранённый префикс с хвостом из репозитория;
+     * пустой Optional - запрос целиком идёт в репозиторий.
+     */
+    private Optional<List<ViewStats>> queryInMemory(ViewsStatsRequest request) {
+        Optional<List<ViewStats>> inMemory = slidingWindow != null ? slidingWindow.query(request) : Optional.empty();
+        if (inMemory.isEmpty() && columnarStore != null) {
+            inMemory = columnarStore.query(request);
+        }
+        if (inMemory.isEmpty() && incrementalQuery != null) {
+            inMemory = incrementalQuery.query(request);
+        }
+        return inMemory;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Страница [offset, offset + limit) самых посещаемых пар (app, uri) для результатов, собранных в памяти.
+ * При заданном limit держит в куче не больше offset + limit элементов вместо сортировки всего результата.
+ */
+public final class TopViewStats {
+    /**
+     * Тот же порядок, что и в SQL-запросах статистики: по убыванию hits, при равенстве - по app и uri
+     * с COLLATE "C".
+     */
+    public static final Comparator<ViewStats> ORDER = ViewStats.ORDER;
+
+    private TopViewStats() {
+    }
+
+    public static List<ViewStats> page(Stream<ViewStats> stats, ViewsStatsRequest request) {
+        if (!request.hasLimitCondition()) {
+            return stats.sorted(ORDER).skip(request.getOffset()).toList();
+        }
+        int capacity = (int) Math.min((long) request.getOffset() + request.getLimit(), Integer.MAX_VALUE);
+        PriorityQueue<ViewStats> top = new PriorityQueue<>(ORDER.reversed());
+        stats.forEach(viewStats -> {
+            if (top.size() < capacity) {
+                top.add(viewStats);
+            } else if (ORDER.compare(viewStats, top.peek()) < 0) {
+                top.poll();
+                top.add(viewStats);
+            }
+        });
+        List<ViewStats> sorted = new ArrayList<>(top);
+        sorted.sort(ORDER);
+        return sorted.subList(Math.min(request.getOffset(), sorted.size()), sorted.size());
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Фильтр uri в /stats: значение со звёздочкой - шаблон, где {@code *} совпадает с любой последовательностью
+ * символов, включая {@code /}; остальные значения сравниваются целиком. Поиск по индексу идёт по части
+ * шаблона до первой звёздочки, поэтому {@code /events/*} находит uri раздела без полного просмотра.
+ */
+public final class UriPatterns {
+    public static final char WILDCARD = '*';
+
+    private UriPatterns() {
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf(WILDCARD) >= 0;
+    }
+
+    /**
+     * Постоянная часть шаблона до первой звёздочки.
+     */
+    public static String prefix(String pattern) {
+        int wildcard = pattern.indexOf(WILDCARD);
+        return wildcard < 0 ? pattern : pattern.substring(0, wildcard);
+    }
+
+    /**
+     * Шаблон для SQL LIKE с экранированием по умолчанию ({@code \}).
+     */
+    public static String toLike(String pattern) {
+        StringBuilder like = new StringBuilder(pattern.length() + 4);
+        for (char c : pattern.toCharArray()) {
+            if (c == WILDCARD) {
+                like.append('%');
+            } else {
+                if (c == '%' || c == '_' || c == '\\') {
+                    like.append('\\');
+                }
+                like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    /**
+     * Предикат для фильтра из запроса; пустой фильтр пропускает любой uri.
+     */
+    public static Predicate<String> matcher(List<String> uris) {
+        if (uris.isEmpty()) {
+            return uri -> true;
+        }
+        Set<String> exact = new HashSet<>();
+        StringBuilder regex = new StringBuilder();
+        for (String uri : uris) {
+            if (!isPattern(uri)) {
+                exact.add(uri);
+                continue;
+            }
+            if (!regex.isEmpty()) {
+                regex.append('|');
+            }
+            String[] parts = uri.split(Pattern.quote(String.valueOf(WILDCARD)), -1);
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                if (!parts[i].isEmpty()) {
+                    regex.append(Pattern.quote(parts[i]));
+                }
+            }
+        }
+        if (regex.isEmpty()) {
+            return exact::contains;
+        }
+        Pattern patterns = Pattern.compile(regex.toString(), Pattern.DOTALL);
+        return uri -> exact.contains(uri) || patterns.matcher(uri).matches();
+    }
+}
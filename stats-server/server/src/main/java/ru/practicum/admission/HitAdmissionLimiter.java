@@ -0,0 +1,120 @@
+package ru.practicum.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.exception.HitRejectedException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничивает число одновременных записей хитов в БД, подстраивая предел под её задержку (AIMD): запись дольше
+ * maxLatency или с ошибкой умножает предел на backoffRatio, быстрая запись при загрузке не меньше половины
+ * предела увеличивает его на единицу. Запись сверх предела не ждёт соединения, а сразу уходит в overflow
+ * или отклоняется.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.admission.enabled", havingValue = "true")
+public class HitAdmissionLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxLatencyNanos;
+    private final double backoffRatio;
+    private final LongSupplier nanoTime;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejectedCounter;
+    private final Counter divertedCounter;
+
+    private volatile double limit;
+
+    @Autowired
+    public HitAdmissionLimiter(MeterRegistry meterRegistry,
+                               @Value("${stats.admission.initial-limit:20}") int initialLimit,
+                               @Value("${stats.admission.min-limit:2}") int minLimit,
+                               @Value("${stats.admission.max-limit:100}") int maxLimit,
+                               @Value("${stats.admission.max-latency:PT0.2S}") Duration maxLatency,
+                               @Value("${stats.admission.backoff-ratio:0.9}") double backoffRatio) {
+        this(meterRegistry, initialLimit, minLimit, maxLimit, maxLatency, backoffRatio, System::nanoTime);
+    }
+
+    HitAdmissionLimiter(MeterRegistry meterRegistry, int initialLimit, int minLimit, int maxLimit,
+                        Duration maxLatency, double backoffRatio, LongSupplier nanoTime) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.nanoTime = nanoTime;
+        this.limit = initialLimit;
+
+        Gauge.builder("stats.admission.limit", this, HitAdmissionLimiter::limit)
+                .description("Concurrent hit writes currently allowed")
+                .register(meterRegistry);
+        Gauge.builder("stats.admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Hit writes currently running")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.admission.rejected")
+                .description("Hit requests rejected because the write limit was reached")
+                .register(meterRegistry);
+        this.divertedCounter = Counter.builder("stats.admission.diverted")
+                .description("Hit requests sent to the write-behind buffer because the write limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет store, если предел не достигнут, иначе overflow; без overflow запрос отклоняется
+     * {@link HitRejectedException}.
+     */
+    public void write(Runnable store, Runnable overflow) {
+        if (!tryAcquire()) {
+            if (overflow == null) {
+                rejectedCounter.increment();
+                throw new HitRejectedException("Too many concurrent hit writes");
+            }
+            divertedCounter.increment();
+            overflow.run();
+            return;
+        }
+        long start = nanoTime.getAsLong();
+        boolean succeeded = false;
+        try {
+            store.run();
+            succeeded = true;
+        } finally {
+            release(nanoTime.getAsLong() - start, succeeded);
+        }
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void release(long latencyNanos, boolean succeeded) {
+        int concurrent = inFlight.getAndDecrement();
+        if (!succeeded || latencyNanos > maxLatencyNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (concurrent * 2 >= limit()) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package ru.practicum.bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Сжатое множество неотрицательных int в раскладке Roaring: значения делятся по старшим 16 битам на блоки,
+ * блок до {@link #ARRAY_MAX} значений хранится отсортированным массивом младших 16 бит (2 байта на значение),
+ * более плотный - битовой картой на 65536 бит (8 КБ). Плотные id из словаря занимают немного блоков,
+ * и объединение идёт поблочно.
+ */
+public class RoaringBitmap {
+    static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, key, new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) value);
+    }
+
+    public boolean contains(int value) {
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Добавляет в это множество все значения other и возвращает это множество.
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        for (int i = 0; i < other.size; i++) {
+            int index = indexOf(other.keys[i]);
+            if (index < 0) {
+                insert(-index - 1, other.keys[i], other.containers[i].copy());
+            } else {
+                containers[index] = containers[index].or(other.containers[i]);
+            }
+        }
+        return this;
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Число блоков, затем для каждого ключ, мощность - 1 и содержимое: массив значений при мощности
+     * не больше {@link #ARRAY_MAX}, иначе битовая карта.
+     */
+    public byte[] toBytes() {
+        int length = Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            length += 2 * Character.BYTES + containers[i].serializedSize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putChar(keys[i]).putChar((char) (containers[i].cardinality() - 1));
+            containers[i].write(buffer);
+        }
+        return buffer.array();
+    }
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int size = buffer.getInt();
+        bitmap.keys = new char[Math.max(size, 1)];
+        bitmap.containers = new Container[Math.max(size, 1)];
+        for (int i = 0; i < size; i++) {
+            bitmap.keys[i] = buffer.getChar();
+            int cardinality = buffer.getChar() + 1;
+            bitmap.containers[i] = cardinality <= ARRAY_MAX
+                    ? ArrayContainer.read(buffer, cardinality)
+                    : BitmapContainer.read(buffer, cardinality);
+        }
+        bitmap.size = size;
+        return bitmap;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * Блок значений с общими старшими 16 битами. Изменяющие операции возвращают блок, которым нужно
+     * заменить текущий: массив при переполнении превращается в битовую карту.
+     */
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+        Container add(char value);
+
+        boolean contains(char value);
+
+        Container or(Container other);
+
+        int cardinality();
+
+        Container copy();
+
+        int serializedSize();
+
+        void write(ByteBuffer buffer);
+    }
+
+    private static final class ArrayContainer implements Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.copy().or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[cardinality + array.cardinality];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < cardinality && j < array.cardinality) {
+                char left = values[i];
+                char right = array.values[j];
+                if (left <= right) {
+                    i++;
+                }
+                if (right <= left) {
+                    j++;
+                }
+                merged[count++] = (char) Math.min(left, right);
+            }
+            while (i < cardinality) {
+                merged[count++] = values[i++];
+            }
+            while (j < array.cardinality) {
+                merged[count++] = array.values[j++];
+            }
+            ArrayContainer result = new ArrayContainer(merged, count);
+            return count > ARRAY_MAX ? result.toBitmap() : result;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        public int serializedSize() {
+            return cardinality * Character.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            for (int i = 0; i < cardinality; i++) {
+                buffer.putChar(values[i]);
+            }
+        }
+
+        static ArrayContainer read(ByteBuffer buffer, int cardinality) {
+            char[] values = new char[cardinality];
+            buffer.asCharBuffer().get(values);
+            buffer.position(buffer.position() + cardinality * Character.BYTES);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char value) {
+            long word = words[value >>> 6];
+            long updated = word | 1L << value;
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    add(array.values[i]);
+                }
+                return this;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                words[i] |= otherWords[i];
+                count += Long.bitCount(words[i]);
+            }
+            cardinality = count;
+            return this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        public int serializedSize() {
+            return words.length * Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+
+        static BitmapContainer read(ByteBuffer buffer, int cardinality) {
+            long[] words = new long[BITMAP_WORDS];
+            buffer.asLongBuffer().get(words);
+            buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+}
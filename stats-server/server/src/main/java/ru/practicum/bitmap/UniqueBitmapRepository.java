@@ -0,0 +1,136 @@
+package ru.practicum.bitmap;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.QueryParameters;
+import ru.practicum.dictionary.EncodedHit;
+import ru.practicum.dictionary.StatsDictionary;
+import ru.practicum.model.AppUri;
+import ru.practicum.rollup.Granularity;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Точные множества посетителей: по битовой карте id ip из stats_ip на каждую пару (app, uri) за сутки.
+ * Карты учитывают хиты, сохранённые при включённом stats.bitmap.enabled, поэтому при первом запуске с флагом
+ * в stats_watermark записываются первые сутки, целиком попадающие в карты; более ранние сутки считаются
+ * по сырым хитам.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.bitmap.enabled", havingValue = "true")
+public class UniqueBitmapRepository {
+    private static final String INSERT_EMPTY_QUERY = "INSERT INTO stats_unique_day (day, app_id, uri_id, bitmap) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (day, app_id, uri_id) DO NOTHING";
+    private static final String LOCK_QUERY = "SELECT bitmap FROM stats_unique_day " +
+            "WHERE day = ? AND app_id = ? AND uri_id = ? FOR UPDATE";
+    private static final String UPDATE_QUERY = "UPDATE stats_unique_day SET bitmap = ? " +
+            "WHERE day = ? AND app_id = ? AND uri_id = ?";
+    private static final String BITMAPS_QUERY = "SELECT a.name AS app, u.uri AS uri, b.bitmap FROM stats_unique_day b " +
+            "JOIN stats_app a ON a.id = b.app_id JOIN stats_uri u ON u.id = b.uri_id " +
+            "WHERE b.day >= ? AND b.day < ? ";
+    private static final String VALID_FROM_NAME = "bitmap";
+    private static final String INIT_VALID_FROM_QUERY = "INSERT INTO stats_watermark (name, value) VALUES (?, ?) " +
+            "ON CONFLICT (name) DO NOTHING";
+    private static final String VALID_FROM_QUERY = "SELECT value FROM stats_watermark WHERE name = ?";
+    private static final Comparator<DayKey> KEY_ORDER = Comparator
+            .comparing(DayKey::day)
+            .thenComparingInt(DayKey::appId)
+            .thenComparingInt(DayKey::uriId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsDictionary statsDictionary;
+
+    private LocalDate validFrom;
+
+    @PostConstruct
+    public void init() {
+        LocalDateTime firstFullDay = Granularity.DAY.ceil(LocalDateTime.now());
+        jdbcTemplate.update(INIT_VALID_FROM_QUERY, VALID_FROM_NAME, Timestamp.valueOf(firstFullDay));
+        validFrom = jdbcTemplate.queryForObject(VALID_FROM_QUERY, Timestamp.class, VALID_FROM_NAME)
+                .toLocalDateTime().toLocalDate();
+        log.info("Daily unique bitmaps are complete from {}", validFrom);
+    }
+
+    /**
+     * Первые сутки, с которых карты содержат все хиты.
+     */
+    public LocalDate validFrom() {
+        return validFrom;
+    }
+
+    /**
+     * Добавляет id ip хитов в суточные карты. Вызывается в транзакции записи хитов; строки блокируются
+     * в фиксированном порядке, как и скетчи HyperLogLog. Карта, в которой все ip уже были, не перезаписывается.
+     */
+    public void addHits(List<EncodedHit> hits) {
+        Map<String, Integer> ipIds = statsDictionary.internIps(hits.stream().map(EncodedHit::ip).toList());
+        Map<DayKey, RoaringBitmap> increments = new TreeMap<>(KEY_ORDER);
+        for (EncodedHit hit : hits) {
+            DayKey key = new DayKey(hit.timestamp().toLocalDate(), hit.appId(), hit.uriId());
+            increments.computeIfAbsent(key, k -> new RoaringBitmap()).add(ipIds.get(hit.ip()));
+        }
+
+        byte[] empty = new RoaringBitmap().toBytes();
+        jdbcTemplate.batchUpdate(INSERT_EMPTY_QUERY, increments.keySet(), increments.size(), (ps, key) -> {
+            ps.setDate(1, Date.valueOf(key.day()));
+            ps.setInt(2, key.appId());
+            ps.setInt(3, key.uriId());
+            ps.setBytes(4, empty);
+        });
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<DayKey, RoaringBitmap> increment : increments.entrySet()) {
+            DayKey key = increment.getKey();
+            Date day = Date.valueOf(key.day());
+            byte[] stored = jdbcTemplate.queryForObject(LOCK_QUERY, byte[].class, day, key.appId(), key.uriId());
+            RoaringBitmap bitmap = RoaringBitmap.fromBytes(stored);
+            long before = bitmap.cardinality();
+            if (bitmap.or(increment.getValue()).cardinality() != before) {
+                updates.add(new Object[]{bitmap.toBytes(), day, key.appId(), key.uriId()});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_QUERY, updates);
+        }
+    }
+
+    /**
+     * Объединяет суточные карты дней [from, to) по каждой паре (app, uri).
+     * appId == null и пустой список uriIds означают отсутствие фильтра по app и uri.
+     */
+    public Map<AppUri, RoaringBitmap> mergeBitmaps(LocalDate from, LocalDate to, Integer appId,
+                                                   List<Integer> uriIds) {
+        Map<AppUri, RoaringBitmap> bitmaps = new TreeMap<>();
+        if (!from.isBefore(to)) {
+            return bitmaps;
+        }
+        Object[] parameters = new QueryParameters()
+                .add(Date.valueOf(from), Date.valueOf(to))
+                .addFilters(appId, uriIds)
+                .toArray();
+        String query = BITMAPS_QUERY + QueryParameters.conditions(appId != null, !uriIds.isEmpty());
+        jdbcTemplate.query(query, rs -> {
+            AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+            RoaringBitmap bitmap = RoaringBitmap.fromBytes(rs.getBytes("bitmap"));
+            bitmaps.merge(key, bitmap, RoaringBitmap::or);
+        }, parameters);
+        return bitmaps;
+    }
+
+    private record DayKey(LocalDate day, int appId, int uriId) {
+    }
+}
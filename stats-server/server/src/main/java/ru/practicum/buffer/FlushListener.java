@@ -0,0 +1,20 @@
+package ru.practicum.buffer;
+
+import ru.practicum.EndpointHit;
+
+import java.util.List;
+
+/**
+ * Исход хитов, принятых буфером write-behind: записаны в репозиторий или потеряны. Вызывается потоком записи,
+ * при DROP_OLDEST - потоком, вытеснившим хит; исключение слушателя не влияет на запись.
+ */
+public interface FlushListener {
+    FlushListener NONE = new FlushListener() {
+    };
+
+    default void stored(List<EndpointHit> hits) {
+    }
+
+    default void dropped(List<EndpointHit> hits) {
+    }
+}
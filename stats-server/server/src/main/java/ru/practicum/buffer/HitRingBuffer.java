@@ -0,0 +1,121 @@
+package ru.practicum.buffer;
+
+import ru.practicum.EndpointHit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный неблокирующий кольцевой буфер (MPMC, схема Вьюкова): у каждой ячейки есть счётчик
+ * последовательности, по которому производители и потребители без блокировок определяют, свободна ли ячейка.
+ */
+public class HitRingBuffer {
+    private final int mask;
+    private final AtomicReferenceArray<EndpointHit> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public HitRingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(EndpointHit hit) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.set(index, hit);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Добавляет все хиты подряд или ни одного. Места резервируются сдвигом tail сразу на hits.size(), если их
+     * освободили потребители; ячейка, которую потребитель уже забрал, но ещё не отметил свободной, дожидается
+     * его в цикле. Потребитель не читает дальше первой ещё не записанной ячейки.
+     */
+    public boolean offerAll(List<EndpointHit> hits) {
+        int count = hits.size();
+        if (count == 0) {
+            return true;
+        }
+        long position;
+        do {
+            position = tail.get();
+            if (position + count - head.get() > capacity()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + count));
+        for (EndpointHit hit : hits) {
+            int index = (int) (position & mask);
+            while (sequences.get(index) != position) {
+                Thread.onSpinWait();
+            }
+            items.set(index, hit);
+            sequences.set(index, position + 1);
+            position++;
+        }
+        return true;
+    }
+
+    public EndpointHit poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    EndpointHit hit = items.getAndSet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return hit;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    public int drainTo(List<EndpointHit> target, int maxItems) {
+        int drained = 0;
+        EndpointHit hit;
+        while (drained < maxItems && (hit = poll()) != null) {
+            target.add(hit);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
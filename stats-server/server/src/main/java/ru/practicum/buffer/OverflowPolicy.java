@@ -0,0 +1,7 @@
+package ru.practicum.buffer;
+
+public enum OverflowPolicy {
+    BLOCK,
+    DROP_OLDEST,
+    REJECT
+}
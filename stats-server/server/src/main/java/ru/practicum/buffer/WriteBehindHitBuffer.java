@@ -0,0 +1,278 @@
+package ru.practicum.buffer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.exception.HitRejectedException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.write-behind.enabled", havingValue = "true")
+public class WriteBehindHitBuffer {
+    private static final long RETRY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final StatsRepository statsRepository;
+    private final HitRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long blockTimeoutNanos;
+    private final Duration shutdownTimeout;
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private final int maxAttempts;
+    private final Thread flusher;
+
+    private int attempts;
+
+    private volatile boolean running;
+    private volatile FlushListener listener = FlushListener.NONE;
+
+    public WriteBehindHitBuffer(StatsRepository statsRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${stats.write-behind.capacity:65536}") int capacity,
+                                @Value("${stats.write-behind.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                                @Value("${stats.write-behind.batch-size:1000}") int batchSize,
+                                @Value("${stats.write-behind.flush-interval:PT1S}") Duration flushInterval,
+                                @Value("${stats.write-behind.block-timeout:PT1S}") Duration blockTimeout,
+                                @Value("${stats.write-behind.shutdown-timeout:PT10S}") Duration shutdownTimeout,
+                                @Value("${stats.write-behind.max-attempts:5}") int maxAttempts) {
+        this.statsRepository = statsRepository;
+        this.buffer = new HitRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.shutdownTimeout = shutdownTimeout;
+        this.maxAttempts = maxAttempts;
+        this.flusher = new Thread(this::flushLoop, "stats-write-behind-flusher");
+        this.flusher.setDaemon(true);
+
+        Gauge.builder("stats.write_behind.queue.depth", buffer, HitRingBuffer::size)
+                .description("Hits waiting to be flushed to the repository")
+                .register(meterRegistry);
+        Gauge.builder("stats.write_behind.queue.capacity", buffer, HitRingBuffer::capacity)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.write_behind.flush.latency")
+                .description("Time spent writing one batch to the repository")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.write_behind.dropped")
+                .description("Hits evicted by the DROP_OLDEST overflow policy")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("stats.write_behind.rejected")
+                .description("Hits rejected because the buffer was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("stats.write_behind.failed")
+                .description("Hits dropped because the repository cannot store them")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher.start();
+        log.info("Write-behind buffer started: capacity={}, policy={}, batchSize={}",
+                buffer.capacity(), overflowPolicy, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(shutdownTimeout.toMillis());
+        if (flusher.isAlive()) {
+            log.error("Write-behind flusher did not finish in {}, {} hits are lost", shutdownTimeout, buffer.size());
+        } else {
+            log.info("Write-behind buffer flushed and stopped.");
+        }
+    }
+
+    public void add(EndpointHit hit) {
+        addAll(List.of(hit));
+    }
+
+    /**
+     * Ставит в очередь все хиты или, при отказе, ни одного: отклонённую пачку клиент повторяет целиком,
+     * и её часть не должна оказаться записанной дважды.
+     */
+    public void addAll(List<EndpointHit> hits) {
+        if (!running) {
+            throw new HitRejectedException("Stats server is shutting down");
+        }
+        if (hits.size() > buffer.capacity()) {
+            reject(hits.size());
+        }
+        if (!buffer.offerAll(hits)) {
+            handleOverflow(hits);
+        }
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    public void setListener(FlushListener listener) {
+        this.listener = listener;
+    }
+
+    private void handleOverflow(List<EndpointHit> hits) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                while (!buffer.offerAll(hits)) {
+                    EndpointHit evicted = buffer.poll();
+                    if (evicted != null) {
+                        droppedCounter.increment();
+                        notify(() -> listener.dropped(List.of(evicted)));
+                    }
+                }
+            }
+            case BLOCK -> {
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (!buffer.offerAll(hits)) {
+                    LockSupport.unpark(flusher);
+                    if (System.nanoTime() - deadline > 0) {
+                        reject(hits.size());
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+            }
+            case REJECT -> reject(hits.size());
+        }
+    }
+
+    private void reject(int hits) {
+        rejectedCounter.increment(hits);
+        throw new HitRejectedException("Hit buffer is full");
+    }
+
+    private void flushLoop() {
+        List<EndpointHit> pending = List.of();
+        long lastFlush = System.nanoTime();
+        while (running || buffer.size() > 0 || !pending.isEmpty()) {
+            boolean due = System.nanoTime() - lastFlush >= flushIntervalNanos;
+            if (running && !due && pending.isEmpty() && buffer.size() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos - (System.nanoTime() - lastFlush));
+                continue;
+            }
+            if (pending.isEmpty()) {
+                List<EndpointHit> batch = new ArrayList<>(batchSize);
+                buffer.drainTo(batch, batchSize);
+                pending = batch;
+            }
+            lastFlush = System.nanoTime();
+            if (pending.isEmpty()) {
+                continue;
+            }
+            pending = flush(pending);
+        }
+    }
+
+    /**
+     * Пачка при недоступной БД повторяется, пока БД не вернётся, при временной ошибке - не больше max-attempts раз.
+     * Остальные ошибки не исправятся повтором: пачка делится пополам, пока не останутся хиты, которые не
+     * записываются и по одному, - они отбрасываются. Возвращает хиты, которые нужно повторить.
+     */
+    private List<EndpointHit> flush(List<EndpointHit> batch) {
+        try {
+            save(batch);
+            attempts = 0;
+            return List.of();
+        } catch (RuntimeException e) {
+            if (!running) {
+                log.error("Dropping {} hits during shutdown", batch.size(), e);
+                notify(() -> listener.dropped(batch));
+                return List.of();
+            }
+            if (isUnavailable(e) || isTransient(e) && ++attempts < maxAttempts) {
+                log.warn("Cannot flush {} hits, retrying", batch.size(), e);
+                LockSupport.parkNanos(RETRY_BACKOFF_NANOS);
+                return batch;
+            }
+            log.warn("Cannot flush {} hits, isolating failing hits", batch.size(), e);
+            attempts = 0;
+            return isolate(batch, e);
+        }
+    }
+
+    /**
+     * Пишет пачку, уже не записавшуюся целиком из-за ошибки error, по половинам. Возвращает хиты, запись
+     * которых прервала недоступность БД или временная ошибка, начиная с прерванной половины.
+     */
+    private List<EndpointHit> isolate(List<EndpointHit> batch, RuntimeException error) {
+        if (batch.size() == 1) {
+            EndpointHit hit = batch.get(0);
+            failedCounter.increment();
+            log.error("Dropping hit that cannot be stored: app={}, uri={}, ip={}, timestamp={}",
+                    hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp(), error);
+            notify(() -> listener.dropped(batch));
+            return List.of();
+        }
+        int middle = batch.size() / 2;
+        List<EndpointHit> first = batch.subList(0, middle);
+        List<EndpointHit> second = batch.subList(middle, batch.size());
+        List<EndpointHit> retry = saveOrIsolate(first);
+        if (!retry.isEmpty()) {
+            List<EndpointHit> remaining = new ArrayList<>(retry);
+            remaining.addAll(second);
+            return remaining;
+        }
+        return saveOrIsolate(second);
+    }
+
+    private List<EndpointHit> saveOrIsolate(List<EndpointHit> batch) {
+        try {
+            save(batch);
+            return List.of();
+        } catch (RuntimeException e) {
+            return isUnavailable(e) || isTransient(e) ? new ArrayList<>(batch) : isolate(batch, e);
+        }
+    }
+
+    private void save(List<EndpointHit> batch) {
+        flushTimer.record(() -> statsRepository.saveHits(batch));
+        notify(() -> listener.stored(batch));
+    }
+
+    /**
+     * Ошибка слушателя не должна выглядеть как ошибка записи: иначе записанная пачка была бы повторена.
+     */
+    private void notify(Runnable event) {
+        try {
+            event.run();
+        } catch (RuntimeException e) {
+            log.error("Write-behind listener failed", e);
+        }
+    }
+
+    private static boolean isUnavailable(RuntimeException e) {
+        return e instanceof DataAccessResourceFailureException;
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.cache;
+
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Нормализованный запрос /stats: порядок и повторы uri не влияют на ответ, поэтому не влияют и на ключ.
+ */
+record StatsCacheKey(LocalDateTime start, LocalDateTime end, String application, List<String> uris, boolean unique,
+                     boolean exact, Integer limit, int offset) {
+
+    static StatsCacheKey of(ViewsStatsRequest request, LocalDateTime end) {
+        return new StatsCacheKey(request.getStart(), end,
+                request.hasApplicationCondition() ? request.getApplication() : null,
+                request.getUris().stream().distinct().sorted().toList(),
+                request.isUnique(), request.isExact(), request.hasLimitCondition() ? request.getLimit() : null,
+                request.getOffset());
+    }
+
+    ViewsStatsRequest toRequest() {
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .application(application)
+                .uris(uris)
+                .unique(unique)
+                .exact(exact)
+                .limit(limit)
+                .offset(offset)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Кэш ответов /stats. Ключ - нормализованный запрос: uri отсортированы, end открытого периода округлён вниз
+ * до {@code end-bucket}, поэтому повторные запросы "до текущего момента" в пределах одного интервала попадают
+ * в одну запись.
+ * Ответы по периодам, закончившимся раньше {@code closed-after} назад, считаются окончательными и не истекают;
+ * остальные живут {@code ttl}. Одновременные промахи по одному ключу вычисляются один раз.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.cache.enabled", havingValue = "true")
+public class StatsResponseCache {
+    private final Cache<StatsCacheKey, List<ViewStats>> cache;
+    private final Duration endBucket;
+    private final Duration closedAfter;
+
+    @Autowired
+    public StatsResponseCache(MeterRegistry meterRegistry,
+                              @Value("${stats.cache.max-rows:100000}") long maxRows,
+                              @Value("${stats.cache.ttl:PT10S}") Duration ttl,
+                              @Value("${stats.cache.end-bucket:PT10S}") Duration endBucket,
+                              @Value("${stats.cache.closed-after:PT5M}") Duration closedAfter) {
+        this(meterRegistry, maxRows, ttl, endBucket, closedAfter, Ticker.systemTicker());
+    }
+
+    StatsResponseCache(MeterRegistry meterRegistry, long maxRows, Duration ttl, Duration endBucket,
+                       Duration closedAfter, Ticker ticker) {
+        this.endBucket = endBucket;
+        this.closedAfter = closedAfter;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxRows)
+                .weigher((StatsCacheKey key, List<ViewStats> stats) -> stats.size() + 1)
+                .expireAfter(new ClosedRangeExpiry(ttl.toNanos()))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.response");
+    }
+
+    /**
+     * Ответ из кэша или результат loader для нормализованного запроса.
+     */
+    public List<ViewStats> get(ViewsStatsRequest request, Function<ViewsStatsRequest, List<ViewStats>> loader) {
+        StatsCacheKey key = StatsCacheKey.of(request, roundEnd(request));
+        return cache.get(key, k -> loader.apply(k.toRequest()));
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Округляет end открытого периода вниз до границы интервала, если от этого период не становится пустым.
+     * Закрытые периоды не округляются: их ответ окончателен и должен точно совпадать с запрошенным.
+     */
+    private LocalDateTime roundEnd(ViewsStatsRequest request) {
+        long bucketSeconds = endBucket.toSeconds();
+        if (bucketSeconds <= 0 || isClosed(request.getEnd())) {
+            return request.getEnd();
+        }
+        long endSecond = request.getEnd().toEpochSecond(ZoneOffset.UTC);
+        LocalDateTime rounded = LocalDateTime.ofEpochSecond(endSecond - Math.floorMod(endSecond, bucketSeconds), 0,
+                ZoneOffset.UTC);
+        return rounded.isBefore(request.getStart()) ? request.getEnd() : rounded;
+    }
+
+    private boolean isClosed(LocalDateTime end) {
+        return end.isBefore(LocalDateTime.now().minus(closedAfter));
+    }
+
+    private class ClosedRangeExpiry implements Expiry<StatsCacheKey, List<ViewStats>> {
+        private final long ttlNanos;
+
+        private ClosedRangeExpiry(long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(StatsCacheKey key, List<ViewStats> stats, long currentTime) {
+            return isClosed(key.end()) ? Long.MAX_VALUE : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(StatsCacheKey key, List<ViewStats> stats, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(key, stats, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(StatsCacheKey key, List<ViewStats> stats, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package ru.practicum.column;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.TopViewStats;
+import ru.practicum.UriPatterns;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+import ru.practicum.model.AppUri;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Колоночная копия хитов за последние {@code horizon} в памяти: блоки параллельных массивов timestamp,
+ * id пары (app, uri) и id ip. Закрытые блоки упорядочены по времени, так что период находится двоичным поиском,
+ * а группировка - это счётчики в массиве по id пары. При старте заполняется хитами из БД.
+ * <p>
+ * Как и скользящее окно, видит только хиты, принятые этим экземпляром сервера.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.columnar.enabled", havingValue = "true")
+public class ColumnarHitStore {
+    private final StatsRepository statsRepository;
+    private final Duration horizon;
+    private final int chunkSize;
+    private final Map<AppUri, Integer> pairIds = new HashMap<>();
+    private final Map<String, Integer> ipIds = new HashMap<>();
+    private final Counter answeredCounter;
+    private final Counter fallbackCounter;
+
+    private volatile Chunks chunks;
+    private volatile boolean ready;
+
+    public ColumnarHitStore(StatsRepository statsRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${stats.columnar.horizon:P30D}") Duration horizon,
+                            @Value("${stats.columnar.chunk-size:65536}") int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > HitChunk.MAX_CAPACITY) {
+            throw new IllegalArgumentException("stats.columnar.chunk-size must be in [1, " + HitChunk.MAX_CAPACITY + "]");
+        }
+        this.statsRepository = statsRepository;
+        this.horizon = horizon;
+        this.chunkSize = chunkSize;
+        this.chunks = new Chunks(List.of(), new HitChunk(chunkSize), new Pairs());
+        this.answeredCounter = Counter.builder("stats.columnar.answered")
+                .description("Stats requests answered from the in-memory columnar store")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("stats.columnar.fallback")
+                .description("Stats requests the columnar store could not answer")
+                .register(meterRegistry);
+        Gauge.builder("stats.columnar.hits", this, ColumnarHitStore::size)
+                .description("Hits held in the columnar store")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild(LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${stats.columnar.prune-interval:PT10M}")
+    public void prune() {
+        prune(LocalDateTime.now());
+    }
+
+    public void record(List<EndpointHit> hits) {
+        record(hits, LocalDateTime.now());
+    }
+
+    /**
+     * Статистика из памяти либо пустой Optional, если начало периода раньше горизонта; тогда запрос идёт в БД.
+     */
+    public Optional<List<ViewStats>> query(ViewsStatsRequest request) {
+        return query(request, LocalDateTime.now());
+    }
+
+    long size() {
+        Chunks current = chunks;
+        return current.sealed().stream().mapToLong(HitChunk::size).sum() + current.active().size();
+    }
+
+    int knownPairs() {
+        return chunks.pairs().count;
+    }
+
+    synchronized int knownIps() {
+        return ipIds.size();
+    }
+
+    void rebuild(LocalDateTime now) {
+        long startedAt = System.nanoTime();
+        LocalDateTime from = now.minus(horizon);
+        try {
+            AtomicLong loaded = new AtomicLong();
+            long tail = toMillis(from);
+            statsRepository.streamHitsSince(from, hit -> {
+                recordOne(hit, tail);
+                loaded.incrementAndGet();
+            });
+            ready = true;
+            log.info("Columnar store loaded {} hits since {} in {} ms",
+                    loaded.get(), from, (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (DataAccessException e) {
+            log.warn("Cannot load columnar store, stats are served from the database: {}", e.getMessage());
+        }
+    }
+
+    void record(List<EndpointHit> hits, LocalDateTime now) {
+        if (!ready) {
+            return;
+        }
+        long tail = toMillis(now.minus(horizon));
+        hits.forEach(hit -> recordOne(hit, tail));
+    }
+
+    Optional<List<ViewStats>> query(ViewsStatsRequest request, LocalDateTime now) {
+        Optional<List<ViewStats>> result = ready && !request.getStart().isBefore(now.minus(horizon))
+                ? Optional.of(compute(request))
+                : Optional.empty();
+        (result.isPresent() ? answeredCounter : fallbackCounter).increment();
+        return result;
+    }
+
+    synchronized void prune(LocalDateTime now) {
+        long tail = toMillis(now.minus(horizon));
+        Chunks current = chunks;
+        List<HitChunk> kept = current.sealed().stream()
+                .filter(chunk -> chunk.maxTimestamp() >= tail)
+                .toList();
+        if (kept.size() < current.sealed().size()) {
+            chunks = compactIds(new Chunks(kept, current.active(), current.pairs()));
+        }
+    }
+
+    /**
+     * Перенумеровывает пары и ip, оставшиеся в блоках, если хотя бы половина известных id больше не встречается:
+     * без этого словари копили бы все пары и ip с момента старта. Блоки копируются с новыми id и публикуются
+     * вместе с новым словарём пар, так что читатель старого снимка видит старые id и старые имена.
+     */
+    private Chunks compactIds(Chunks current) {
+        AppUri[] names = current.pairs().names;
+        boolean[] livePairs = new boolean[current.pairs().count];
+        boolean[] liveIps = new boolean[ipIds.size()];
+        current.sealed().forEach(chunk -> chunk.markIds(livePairs, liveIps));
+        current.active().markIds(livePairs, liveIps);
+        if (2 * countLive(livePairs) > livePairs.length && 2 * countLive(liveIps) > liveIps.length) {
+            return current;
+        }
+
+        Pairs pairs = new Pairs();
+        int[] pairMap = new int[livePairs.length];
+        pairIds.clear();
+        for (int id = 0; id < livePairs.length; id++) {
+            if (livePairs[id]) {
+                pairMap[id] = pairs.add(names[id]);
+                pairIds.put(names[id], pairMap[id]);
+            }
+        }
+        String[] ips = new String[liveIps.length];
+        ipIds.forEach((ip, id) -> ips[id] = ip);
+        int[] ipMap = new int[liveIps.length];
+        ipIds.clear();
+        for (int id = 0; id < liveIps.length; id++) {
+            if (liveIps[id]) {
+                ipMap[id] = ipIds.size();
+                ipIds.put(ips[id], ipMap[id]);
+            }
+        }
+        List<HitChunk> sealed = current.sealed().stream()
+                .map(chunk -> chunk.renumber(pairMap, ipMap))
+                .toList();
+        return new Chunks(sealed, current.active().renumber(pairMap, ipMap), pairs);
+    }
+
+    private synchronized void recordOne(EndpointHit hit, long tail) {
+        long timestamp = toMillis(hit.getTimestamp());
+        if (timestamp < tail) {
+            return;
+        }
+        Chunks current = chunks;
+        int pairId = pairIds.computeIfAbsent(new AppUri(hit.getApp(), hit.getUri()), current.pairs()::add);
+        int ipId = ipIds.computeIfAbsent(hit.getIp(), ip -> ipIds.size());
+        current.active().append(timestamp, pairId, ipId);
+        if (current.active().isFull()) {
+            List<HitChunk> sealed = new ArrayList<>(current.sealed());
+            sealed.add(current.active().seal());
+            chunks = new Chunks(List.copyOf(sealed), new HitChunk(chunkSize), current.pairs());
+        }
+    }
+
+    private List<ViewStats> compute(ViewsStatsRequest request) {
+        Chunks snapshot = chunks;
+        int activeSize = snapshot.active().size();
+        // Id пар в прочитанных строках меньше числа пар, прочитанного после размеров блоков
+        int knownPairs = snapshot.pairs().count;
+        AppUri[] names = snapshot.pairs().names;
+        boolean[] allowed = allowedPairs(request, names, knownPairs);
+        long from = toMillis(request.getStart()) + (request.getStart().getNano() % 1_000_000 == 0 ? 0 : 1);
+        long to = toMillis(request.getEnd());
+
+        long[] hits = new long[knownPairs];
+        if (request.isUnique()) {
+            LongArrayBuilder keys = new LongArrayBuilder();
+            snapshot.sealed().forEach(chunk -> chunk.collectPairIps(from, to, allowed, keys, chunk.size()));
+            snapshot.active().collectPairIps(from, to, allowed, keys, activeSize);
+            long[] sorted = keys.sorted();
+            for (int i = 0; i < keys.size(); i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    hits[(int) (sorted[i] >>> Integer.SIZE)]++;
+                }
+            }
+        } else {
+            snapshot.sealed().forEach(chunk -> chunk.count(from, to, allowed, hits, chunk.size()));
+            snapshot.active().count(from, to, allowed, hits, activeSize);
+        }
+
+        List<ViewStats> stats = new ArrayList<>();
+        for (int pairId = 0; pairId < knownPairs; pairId++) {
+            if (hits[pairId] > 0) {
+                stats.add(new ViewStats(names[pairId].app(), names[pairId].uri(), hits[pairId]));
+            }
+        }
+        return TopViewStats.page(stats.stream(), request);
+    }
+
+    private static boolean[] allowedPairs(ViewsStatsRequest request, AppUri[] names, int knownPairs) {
+        if (request.getUris().isEmpty() && !request.hasApplicationCondition()) {
+            return null;
+        }
+        Predicate<String> uris = UriPatterns.matcher(request.getUris());
+        boolean[] allowed = new boolean[knownPairs];
+        for (int pairId = 0; pairId < knownPairs; pairId++) {
+            AppUri pair = names[pairId];
+            allowed[pairId] = uris.test(pair.uri())
+                    && (!request.hasApplicationCondition() || request.getApplication().equals(pair.app()));
+        }
+        return allowed;
+    }
+
+    private static int countLive(boolean[] live) {
+        int count = 0;
+        for (boolean used : live) {
+            if (used) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private record Chunks(List<HitChunk> sealed, HitChunk active, Pairs pairs) {
+    }
+
+    /**
+     * Имена пар по id для блоков одного снимка. Пары только дописываются под блокировкой писателя;
+     * после перенумерации в {@link #prune(LocalDateTime)} создаётся новый словарь.
+     */
+    private static final class Pairs {
+        private volatile AppUri[] names = new AppUri[1024];
+        private volatile int count;
+
+        int add(AppUri pair) {
+            int id = count;
+            if (id == names.length) {
+                names = Arrays.copyOf(names, id * 2);
+            }
+            names[id] = pair;
+            count = id + 1;
+            return id;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.practicum.column;
+
+import java.util.Arrays;
+
+/**
+ * Блок хитов в виде параллельных массивов: timestamp (мс), id пары (app, uri) и id ip.
+ * Открытый блок только дописывается и читается по опубликованному {@link #size()};
+ * закрытый блок неизменяем и, как правило, отсортирован по времени.
+ */
+final class HitChunk {
+    // Номер строки внутри блока занимает младшие биты ключа сортировки
+    private static final int INDEX_BITS = 20;
+    static final int MAX_CAPACITY = 1 << INDEX_BITS;
+
+    private final long[] timestamps;
+    private final int[] pairIds;
+    private final int[] ipIds;
+    private final boolean sorted;
+
+    private volatile int size;
+    private volatile long minTimestamp = Long.MAX_VALUE;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+
+    HitChunk(int capacity) {
+        this(new long[capacity], new int[capacity], new int[capacity], 0, false);
+    }
+
+    private HitChunk(long[] timestamps, int[] pairIds, int[] ipIds, int size, boolean sorted) {
+        this.timestamps = timestamps;
+        this.pairIds = pairIds;
+        this.ipIds = ipIds;
+        this.size = size;
+        this.sorted = sorted;
+        if (size > 0) {
+            this.minTimestamp = sorted ? timestamps[0] : Arrays.stream(timestamps, 0, size).min().getAsLong();
+            this.maxTimestamp = sorted ? timestamps[size - 1] : Arrays.stream(timestamps, 0, size).max().getAsLong();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == timestamps.length;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * Дописывает строку; вызывается только под блокировкой писателя.
+     */
+    void append(long timestamp, int pairId, int ipId) {
+        int index = size;
+        timestamps[index] = timestamp;
+        pairIds[index] = pairId;
+        ipIds[index] = ipId;
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        size = index + 1;
+    }
+
+    /**
+     * Неизменяемая копия, упорядоченная по времени. Если разброс времени не помещается в ключ сортировки,
+     * копия остаётся в порядке записи и читается целиком.
+     */
+    HitChunk seal() {
+        int count = size;
+        long min = minTimestamp;
+        if (count == 0 || maxTimestamp - min >= 1L << (Long.SIZE - 1 - INDEX_BITS)) {
+            return new HitChunk(Arrays.copyOf(timestamps, count), Arrays.copyOf(pairIds, count),
+                    Arrays.copyOf(ipIds, count), count, false);
+        }
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (timestamps[i] - min) << INDEX_BITS | i;
+        }
+        Arrays.sort(keys);
+        long[] sortedTimestamps = new long[count];
+        int[] sortedPairIds = new int[count];
+        int[] sortedIpIds = new int[count];
+        int mask = MAX_CAPACITY - 1;
+        for (int i = 0; i < count; i++) {
+            int source = (int) (keys[i] & mask);
+            sortedTimestamps[i] = timestamps[source];
+            sortedPairIds[i] = pairIds[source];
+            sortedIpIds[i] = ipIds[source];
+        }
+        return new HitChunk(sortedTimestamps, sortedPairIds, sortedIpIds, count, true);
+    }
+
+    /**
+     * Отмечает id пар и ip, встречающиеся в блоке.
+     */
+    void markIds(boolean[] livePairs, boolean[] liveIps) {
+        int count = size;
+        for (int i = 0; i < count; i++) {
+            livePairs[pairIds[i]] = true;
+            liveIps[ipIds[i]] = true;
+        }
+    }
+
+    /**
+     * Копия с id пар и ip, заменёнными по таблицам old -> new, той же ёмкости. Время строк не меняется,
+     * поэтому массив timestamp общий: в открытый блок дописывается только копия, за пределами прочитанных строк.
+     */
+    HitChunk renumber(int[] pairMap, int[] ipMap) {
+        int count = size;
+        int[] renumberedPairIds = new int[pairIds.length];
+        int[] renumberedIpIds = new int[ipIds.length];
+        for (int i = 0; i < count; i++) {
+            renumberedPairIds[i] = pairMap[pairIds[i]];
+            renumberedIpIds[i] = ipMap[ipIds[i]];
+        }
+        return new HitChunk(timestamps, renumberedPairIds, renumberedIpIds, count, sorted);
+    }
+
+    /**
+     * Прибавляет к counts[pairId] число строк периода [from, to] среди первых visible с разрешёнными парами;
+     * pairs == null - все пары.
+     */
+    void count(long from, long to, boolean[] pairs, long[] counts, int visible) {
+        if (visible == 0 || minTimestamp > to || maxTimestamp < from) {
+            return;
+        }
+        if (sorted) {
+            int end = upperBound(to, visible);
+            for (int i = lowerBound(from, visible); i < end; i++) {
+                int pairId = pairIds[i];
+                if (pairs == null || pairs[pairId]) {
+                    counts[pairId]++;
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < visible; i++) {
+            long timestamp = timestamps[i];
+            int pairId = pairIds[i];
+            if (timestamp >= from && timestamp <= to && (pairs == null || pairs[pairId])) {
+                counts[pairId]++;
+            }
+        }
+    }
+
+    /**
+     * Дописывает в keys ключи (pairId, ipId) строк периода среди первых visible с разрешёнными парами.
+     */
+    void collectPairIps(long from, long to, boolean[] pairs, LongArrayBuilder keys, int visible) {
+        if (visible == 0 || minTimestamp > to || maxTimestamp < from) {
+            return;
+        }
+        int start = sorted ? lowerBound(from, visible) : 0;
+        int end = sorted ? upperBound(to, visible) : visible;
+        for (int i = start; i < end; i++) {
+            long timestamp = timestamps[i];
+            int pairId = pairIds[i];
+            if (timestamp >= from && timestamp <= to && (pairs == null || pairs[pairId])) {
+                keys.add((long) pairId << Integer.SIZE | ipIds[i] & 0xffffffffL);
+            }
+        }
+    }
+
+    private int lowerBound(long from, int visible) {
+        int low = 0;
+        int high = visible;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int upperBound(long to, int visible) {
+        int low = 0;
+        int high = visible;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] <= to) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.column;
+
+import java.util.Arrays;
+
+/**
+ * Растущий массив long без упаковки в объекты.
+ */
+final class LongArrayBuilder {
+    private long[] values = new long[1024];
+    private int size;
+
+    void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Сортирует накопленные значения и возвращает внутренний массив; значимы первые {@link #size()} элементов.
+     */
+    long[] sorted() {
+        Arrays.sort(values, 0, size);
+        return values;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.compaction;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Граница сжатия: хиты с created раньше неё остались только в часовых и суточных агрегатах и скетчах.
+ * Значение хранится в stats_watermark и читается в транзакции запроса: в снимке REPEATABLE READ граница
+ * и данные согласованы, даже если сжатие на другом экземпляре сдвигает её и удаляет хиты во время запроса.
+ */
+@Component
+@RequiredArgsConstructor
+public class CompactionWatermark {
+    private static final String NAME = "compaction";
+    private static final String SELECT_QUERY = "SELECT value FROM stats_watermark WHERE name = ?";
+    private static final String ADVANCE_QUERY = "INSERT INTO stats_watermark (name, value) VALUES (?, ?) " +
+            "ON CONFLICT (name) DO UPDATE SET value = GREATEST(stats_watermark.value, EXCLUDED.value)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<LocalDateTime> get() {
+        List<Timestamp> stored = jdbcTemplate.queryForList(SELECT_QUERY, Timestamp.class, NAME);
+        return stored.isEmpty() ? Optional.empty() : Optional.of(stored.get(0).toLocalDateTime());
+    }
+
+    /**
+     * Сдвигает границу вперёд; граница не отступает, даже если задачи на разных экземплярах разошлись.
+     */
+    void advance(LocalDateTime watermark) {
+        jdbcTemplate.update(ADVANCE_QUERY, NAME, Timestamp.valueOf(watermark));
+    }
+}
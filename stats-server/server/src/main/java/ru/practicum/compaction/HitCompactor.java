@@ -0,0 +1,71 @@
+package ru.practicum.compaction;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.rollup.Granularity;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Сжимает хиты старше {@code age}: часовые и суточные агрегаты и часовые скетчи пишутся вместе с хитами
+ * в одной транзакции, поэтому задача только сдвигает границу сжатия на начало суток и удаляет минутные
+ * агрегаты и сырые хиты до неё пачками по {@code batch-size} строк, каждая в своей короткой транзакции.
+ * Запросы перестают читать сырые хиты до границы сразу после её сдвига. Повторный или параллельный
+ * запуск удаляет то, что осталось, включая хиты, пришедшие с прошедшим временем уже после сжатия.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.compaction.enabled", havingValue = "true")
+public class HitCompactor {
+    private static final String DELETE_HITS_QUERY = "DELETE FROM stats WHERE (id, created) IN " +
+            "(SELECT id, created FROM stats WHERE created < ? LIMIT ?)";
+    private static final String DELETE_MINUTES_QUERY = "DELETE FROM stats_rollup WHERE (granularity, bucket, " +
+            "app_id, uri_id) IN (SELECT granularity, bucket, app_id, uri_id FROM stats_rollup " +
+            "WHERE granularity = 'MINUTE' AND bucket < ? LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompactionWatermark watermark;
+
+    @Value("${stats.compaction.age:P60D}")
+    private Duration age;
+
+    @Value("${stats.compaction.batch-size:10000}")
+    private int batchSize;
+
+    @Scheduled(cron = "${stats.compaction.cron:0 30 0 * * *}")
+    public void compact() {
+        try {
+            compact(LocalDateTime.now());
+        } catch (DataAccessException e) {
+            log.error("Hit compaction failed", e);
+        }
+    }
+
+    void compact(LocalDateTime now) {
+        LocalDateTime target = Granularity.DAY.floor(now.minus(age));
+        watermark.advance(target);
+        Timestamp cutoff = Timestamp.valueOf(watermark.get().orElse(target));
+        long minutes = deleteInBatches(DELETE_MINUTES_QUERY, cutoff);
+        long hits = deleteInBatches(DELETE_HITS_QUERY, cutoff);
+        log.info("Compacted hits before {}: deleted {} raw hits and {} minute rollups", cutoff, hits, minutes);
+    }
+
+    private long deleteInBatches(String query, Timestamp cutoff) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(query, cutoff, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.practicum.dedup;
+
+/**
+ * Фильтр Блума над 64-битными хэшами: k позиций получаются двойным хэшированием из двух половин хэша.
+ * Не потокобезопасен, синхронизацию обеспечивает владелец.
+ */
+final class BloomFilter {
+    private final long[] words;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    private long bitCount;
+
+    /**
+     * Фильтр на expectedInsertions значений с долей ложных срабатываний не больше falsePositiveRate
+     * при таком числе вставок.
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive and false positive rate in (0, 1)");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new long[Math.toIntExact((bits + Long.SIZE - 1) / Long.SIZE)];
+        this.bitSize = (long) words.length * Long.SIZE;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    boolean mightContain(long hash) {
+        long combined = hash;
+        long step = step(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Long.remainderUnsigned(combined, bitSize);
+            if ((words[(int) (index >>> 6)] & 1L << index) == 0) {
+                return false;
+            }
+            combined += step;
+        }
+        return true;
+    }
+
+    void put(long hash) {
+        long combined = hash;
+        long step = step(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Long.remainderUnsigned(combined, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                bitCount++;
+            }
+            combined += step;
+        }
+    }
+
+    /**
+     * Ожидаемая доля ложных срабатываний при текущем заполнении.
+     */
+    double expectedFalsePositiveRate() {
+        return Math.pow((double) bitCount / bitSize, hashFunctions);
+    }
+
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    private static long step(long hash) {
+        // Нечётный шаг не бывает нулевым, иначе все k позиций совпали бы
+        return Long.rotateLeft(hash, 32) * 0x9e3779b97f4a7c15L | 1;
+    }
+}
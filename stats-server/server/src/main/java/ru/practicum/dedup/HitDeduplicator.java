@@ -0,0 +1,130 @@
+package ru.practicum.dedup;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.hll.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отбрасывает повторно присланные хиты с тем же hitId без обращений к БД. Сохранённые hitId попадают в текущее
+ * поколение фильтра Блума; раз в {@code window} поколения сдвигаются, и проверяются текущее и предыдущее,
+ * так что повтор распознаётся не меньше window и не дольше двух window после первой записи. Хиты без hitId
+ * не проверяются.
+ * <p>
+ * Ложное срабатывание фильтра теряет уникальный хит; их ожидаемая доля видна в метрике
+ * {@code stats.dedup.false_positive_rate}. Фильтр свой у каждого экземпляра сервера.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.dedup.enabled", havingValue = "true")
+public class HitDeduplicator {
+    private final long expectedHits;
+    private final double generationFalsePositiveRate;
+    // hitId хитов, которые сейчас сохраняются: повтор, пришедший до ответа на первый запрос, тоже отбрасывается
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter checkedCounter;
+    private final Counter droppedCounter;
+
+    private BloomFilter current;
+    private BloomFilter previous;
+
+    public HitDeduplicator(MeterRegistry meterRegistry,
+                           @Value("${stats.dedup.expected-hits:1000000}") long expectedHits,
+                           @Value("${stats.dedup.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.expectedHits = expectedHits;
+        // Проверяются два поколения, поэтому каждое получает половину допустимой доли ложных срабатываний
+        this.generationFalsePositiveRate = falsePositiveRate / 2;
+        this.current = new BloomFilter(expectedHits, generationFalsePositiveRate);
+        this.previous = new BloomFilter(expectedHits, generationFalsePositiveRate);
+        this.checkedCounter = Counter.builder("stats.dedup.checked")
+                .description("Hits with a hitId checked for duplicates")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stats.dedup.dropped")
+                .description("Hits dropped as duplicates")
+                .register(meterRegistry);
+        Gauge.builder("stats.dedup.false_positive_rate", this, HitDeduplicator::expectedFalsePositiveRate)
+                .description("Expected share of unique hits mistaken for duplicates at the current fill")
+                .register(meterRegistry);
+        Gauge.builder("stats.dedup.memory", this, HitDeduplicator::sizeInBytes)
+                .description("Memory held by the duplicate filters")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Отбирает хиты, чьи hitId ещё не встречались и сейчас не сохраняются, и помечает их hitId как сохраняемые.
+     * Для отобранных хитов нужно вызвать {@link #release}, когда станет известен исход записи.
+     */
+    public List<EndpointHit> claim(List<EndpointHit> hits) {
+        List<EndpointHit> accepted = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            String hitId = hit.getHitId();
+            if (hitId == null) {
+                accepted.add(hit);
+                continue;
+            }
+            checkedCounter.increment();
+            if (seen(hitId) || !inFlight.add(hitId)) {
+                droppedCounter.increment();
+                continue;
+            }
+            accepted.add(hit);
+        }
+        return accepted;
+    }
+
+    /**
+     * Снимает пометку с hitId отобранных хитов. hitId записанных хитов запоминается, и их повторы отбрасываются;
+     * незаписанный хит клиент может прислать снова.
+     */
+    public void release(List<EndpointHit> hits, boolean stored) {
+        List<String> hitIds = hits.stream()
+                .map(EndpointHit::getHitId)
+                .filter(Objects::nonNull)
+                .toList();
+        if (stored) {
+            remember(hitIds);
+        }
+        hitIds.forEach(inFlight::remove);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.dedup.window:PT10M}", initialDelayString = "${stats.dedup.window:PT10M}")
+    public synchronized void rotate() {
+        log.debug("Rotating duplicate filter, expected false positive rate was {}", expectedFalsePositiveRate());
+        previous = current;
+        current = new BloomFilter(expectedHits, generationFalsePositiveRate);
+    }
+
+    synchronized double expectedFalsePositiveRate() {
+        double currentRate = current.expectedFalsePositiveRate();
+        double previousRate = previous.expectedFalsePositiveRate();
+        return 1 - (1 - currentRate) * (1 - previousRate);
+    }
+
+    synchronized long sizeInBytes() {
+        return current.sizeInBytes() + previous.sizeInBytes();
+    }
+
+    private synchronized boolean seen(String hitId) {
+        long hash = HyperLogLog.hash(hitId);
+        return current.mightContain(hash) || previous.mightContain(hash);
+    }
+
+    private synchronized void remember(List<String> hitIds) {
+        for (String hitId : hitIds) {
+            current.put(HyperLogLog.hash(hitId));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.practicum.dictionary;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Таблица-словарь строк с суррогатными id и кэшем строка -> id в памяти процесса.
+ * Id строки не меняется, поэтому закэшированное значение не устаревает; новые строки попадают в кэш
+ * только после коммита транзакции, в которой они созданы.
+ */
+class DictionaryTable {
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertQuery;
+    private final String selectQuery;
+    private final String likeQuery;
+    private final int maxCached;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    DictionaryTable(JdbcTemplate jdbcTemplate, String table, String column, int maxCached) {
+        this(jdbcTemplate, table, column, "varchar", maxCached);
+    }
+
+    /**
+     * Строки приводятся к columnType при записи и поиске, а ключами результата остаются переданные строки,
+     * даже если тип хранит их в другом написании.
+     */
+    DictionaryTable(JdbcTemplate jdbcTemplate, String table, String column, String columnType, int maxCached) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertQuery = "INSERT INTO " + table + " (" + column + ") SELECT unnest(?::varchar[])::" + columnType +
+                " ON CONFLICT (" + column + ") DO NOTHING";
+        this.selectQuery = "SELECT d.id, v.value FROM " + table + " d " +
+                "JOIN unnest(?::varchar[]) AS v(value) ON d." + column + " = v.value::" + columnType;
+        this.likeQuery = "SELECT id FROM " + table + " WHERE " + column + " LIKE ?";
+        this.maxCached = maxCached;
+    }
+
+    /**
+     * Возвращает id всех значений, создавая недостающие записи словаря.
+     */
+    Map<String, Integer> intern(Collection<String> values) {
+        Map<String, Integer> result = new HashMap<>();
+        TreeSet<String> missing = collectCached(values, result);
+        if (missing.isEmpty()) {
+            return result;
+        }
+        // Значения вставляются в отсортированном порядке, чтобы параллельные транзакции
+        // ждали друг друга на уникальном индексе без взаимных блокировок
+        jdbcTemplate.update(insertQuery, new SqlArrayValue("varchar", missing.toArray()));
+        Map<String, Integer> loaded = load(missing);
+        result.putAll(loaded);
+        cacheAfterCommit(loaded);
+        return result;
+    }
+
+    /**
+     * Возвращает id только уже существующих значений, не создавая новых записей.
+     */
+    Map<String, Integer> find(Collection<String> values) {
+        Map<String, Integer> result = new HashMap<>();
+        TreeSet<String> missing = collectCached(values, result);
+        if (!missing.isEmpty()) {
+            Map<String, Integer> loaded = load(missing);
+            result.putAll(loaded);
+            cache(loaded);
+        }
+        return result;
+    }
+
+    /**
+     * Id значений, подходящих под шаблон LIKE. Шаблон с постоянным началом ищется по индексу text_pattern_ops.
+     */
+    List<Integer> findMatching(String likePattern) {
+        return jdbcTemplate.queryForList(likeQuery, Integer.class, likePattern);
+    }
+
+    int cachedSize() {
+        return ids.size();
+    }
+
+    private TreeSet<String> collectCached(Collection<String> values, Map<String, Integer> result) {
+        TreeSet<String> missing = new TreeSet<>();
+        for (String value : values) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                result.put(value, id);
+            } else {
+                missing.add(value);
+            }
+        }
+        return missing;
+    }
+
+    private Map<String, Integer> load(Collection<String> values) {
+        Map<String, Integer> loaded = new HashMap<>();
+        jdbcTemplate.query(selectQuery, rs -> {
+            loaded.put(rs.getString("value"), rs.getInt("id"));
+        }, new SqlArrayValue("varchar", values.toArray()));
+        return loaded;
+    }
+
+    private void cacheAfterCommit(Map<String, Integer> loaded) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache(loaded);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache(loaded);
+            }
+        });
+    }
+
+    private void cache(Map<String, Integer> loaded) {
+        for (Map.Entry<String, Integer> entry : loaded.entrySet()) {
+            if (ids.size() >= maxCached) {
+                return;
+            }
+            ids.put(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum.dictionary;
+
+import java.time.LocalDateTime;
+
+/**
+ * Хит, в котором app и uri заменены id из словарей.
+ */
+public record EncodedHit(int appId, int uriId, String ip, LocalDateTime timestamp) {
+}
@@ -0,0 +1,56 @@
+package ru.practicum.dictionary;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+
+/**
+ * Проверка ip перед записью в колонку типа inet: принимаются только IPv4 и IPv6 адреса без маски.
+ * Один адрес пишется по-разному ("::1" и "0:0:0:0:0:0:0:1"), поэтому скетчи, окна и словари в памяти
+ * получают его в единой форме {@link #canonical}.
+ */
+public final class IpAddresses {
+    private static final String OCTET = "(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)";
+    private static final Pattern IPV4 = Pattern.compile("(" + OCTET + "\\.){3}" + OCTET);
+    private static final Pattern IPV6_CHARACTERS = Pattern.compile("[0-9a-fA-F:.]+");
+
+    private IpAddresses() {
+    }
+
+    public static boolean isValid(String ip) {
+        if (ip == null) {
+            return false;
+        }
+        if (IPV4.matcher(ip).matches()) {
+            return true;
+        }
+        if (ip.indexOf(':') < 0 || !IPV6_CHARACTERS.matcher(ip).matches()) {
+            return false;
+        }
+        try {
+            // Строка с ':' разбирается как литерал IPv6, без обращения к DNS
+            InetAddress.getByName(ip);
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Форма {@link InetAddress#getHostAddress()}: IPv4 без изменений, IPv6 - восемь групп без сокращений,
+     * IPv4, отображённый в IPv6 ("::ffff:10.0.0.1"), - как IPv4. Ею же пишет ip журнал сегментов.
+     */
+    public static String canonical(String ip) {
+        if (ip != null && IPV4.matcher(ip).matches()) {
+            return ip;
+        }
+        if (!isValid(ip)) {
+            throw new IllegalArgumentException("Invalid ip address: " + ip);
+        }
+        try {
+            return InetAddress.getByName(ip).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid ip address: " + ip, e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.dictionary;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.UriPatterns;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Словарное кодирование app и uri: в stats, stats_rollup и stats_hll хранятся id из stats_app и stats_uri.
+ * Ip получают id из stats_ip только для битовых карт уникальных посетителей.
+ */
+@Component
+public class StatsDictionary {
+    private final DictionaryTable apps;
+    private final DictionaryTable uris;
+    private final DictionaryTable ips;
+
+    public StatsDictionary(JdbcTemplate jdbcTemplate,
+                           @Value("${stats.dictionary.max-cached-entries:100000}") int maxCachedEntries) {
+        this.apps = new DictionaryTable(jdbcTemplate, "stats_app", "name", maxCachedEntries);
+        this.uris = new DictionaryTable(jdbcTemplate, "stats_uri", "uri", maxCachedEntries);
+        this.ips = new DictionaryTable(jdbcTemplate, "stats_ip", "ip", "inet", maxCachedEntries);
+    }
+
+    /**
+     * Заменяет app и uri хитов на id, добавляя в словари новые значения. Вызывается в транзакции записи хитов.
+     */
+    public List<EncodedHit> encode(List<EndpointHit> hits) {
+        Map<String, Integer> appIds = apps.intern(hits.stream().map(EndpointHit::getApp).toList());
+        Map<String, Integer> uriIds = uris.intern(hits.stream().map(EndpointHit::getUri).toList());
+        List<EncodedHit> encoded = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            encoded.add(new EncodedHit(appIds.get(hit.getApp()), uriIds.get(hit.getUri()), hit.getIp(),
+                    hit.getTimestamp()));
+        }
+        return encoded;
+    }
+
+    /**
+     * Id ip, добавляя в словарь новые адреса. Вызывается в транзакции записи хитов.
+     */
+    public Map<String, Integer> internIps(Collection<String> values) {
+        return ips.intern(values);
+    }
+
+    /**
+     * Id app из фильтра запроса; пустой Optional, если от этого app не приходило ни одного хита.
+     */
+    public Optional<Integer> findAppId(String app) {
+        return Optional.ofNullable(apps.find(List.of(app)).get(app));
+    }
+
+    /**
+     * Id известных uri из фильтра запроса; uri, которых нет в словаре, не встречались ни в одном хите.
+     * Шаблоны со звёздочкой раскрываются в id всех подходящих uri.
+     */
+    public List<Integer> findUriIds(List<String> values) {
+        List<String> exact = values.stream().filter(uri -> !UriPatterns.isPattern(uri)).toList();
+        Set<Integer> ids = new LinkedHashSet<>(uris.find(exact).values());
+        values.stream()
+                .filter(UriPatterns::isPattern)
+                .distinct()
+                .forEach(pattern -> ids.addAll(uris.findMatching(UriPatterns.toLike(pattern))));
+        return List.copyOf(ids);
+    }
+}
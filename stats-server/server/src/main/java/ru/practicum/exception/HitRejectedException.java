@@ -0,0 +1,7 @@
+package ru.practicum.exception;
+
+public class HitRejectedException extends RuntimeException {
+    public HitRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.frame;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.EndpointHitFrame;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Читает тела {@code POST /hit} и {@code POST /hit/batch} в формате {@link EndpointHitFrame}.
+ * Для {@code /hit} кадр должен содержать ровно один хит. Ответы в этом формате не пишутся.
+ */
+@Component
+public class EndpointHitFrameHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private static final ResolvableType HIT_LIST = ResolvableType.forClassWithGenerics(List.class, EndpointHit.class);
+
+    public EndpointHitFrameHttpMessageConverter() {
+        super(MediaType.parseMediaType(EndpointHitFrame.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHit.class == clazz || List.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (EndpointHit.class == type || HIT_LIST.isAssignableFrom(ResolvableType.forType(type)))
+                && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        List<EndpointHit> hits = readFrame(inputMessage);
+        if (type != EndpointHit.class) {
+            return hits;
+        }
+        if (hits.size() != 1) {
+            throw new HttpMessageNotReadableException("Expected a single hit in frame, got " + hits.size(),
+                    inputMessage);
+        }
+        return hits.get(0);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object o, Type type, HttpOutputMessage outputMessage) {
+        throw new UnsupportedOperationException("Hit frames are request-only");
+    }
+
+    private List<EndpointHit> readFrame(HttpInputMessage inputMessage) {
+        try {
+            return EndpointHitFrame.read(inputMessage.getBody(), inputMessage.getHeaders().getContentLength());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Malformed hit frame: " + e.getMessage(), e, inputMessage);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ru.practicum.hll;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.practicum.QueryParameters;
+import ru.practicum.dictionary.EncodedHit;
+import ru.practicum.model.AppUri;
+import ru.practicum.rollup.Granularity;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+@Component
+@RequiredArgsConstructor
+public class HllSketchRepository {
+    private static final String INSERT_EMPTY_QUERY = "INSERT INTO stats_hll (bucket, app_id, uri_id, sketch) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (bucket, app_id, uri_id) DO NOTHING";
+    private static final String LOCK_QUERY = "SELECT sketch FROM stats_hll " +
+            "WHERE bucket = ? AND app_id = ? AND uri_id = ? FOR UPDATE";
+    private static final String UPDATE_QUERY = "UPDATE stats_hll SET sketch = ? " +
+            "WHERE bucket = ? AND app_id = ? AND uri_id = ?";
+    private static final String SKETCHES_QUERY = "SELECT a.name AS app, u.uri AS uri, h.sketch FROM stats_hll h " +
+            "JOIN stats_app a ON a.id = h.app_id JOIN stats_uri u ON u.id = h.uri_id " +
+            "WHERE h.bucket >= ? AND h.bucket < ? ";
+    private static final String SKETCHES_BY_INTERVAL_TEMPLATE = "SELECT a.name AS app, u.uri AS uri, " +
+            "date_trunc('{interval}', h.bucket) AS interval_start, h.sketch FROM stats_hll h " +
+            "JOIN stats_app a ON a.id = h.app_id JOIN stats_uri u ON u.id = h.uri_id " +
+            "WHERE h.bucket >= ? AND h.bucket < ? %s ORDER BY interval_start";
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator
+            .comparing(SketchKey::bucket)
+            .thenComparingInt(SketchKey::appId)
+            .thenComparingInt(SketchKey::uriId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${stats.hll.precision:12}")
+    private int precision;
+
+    @Value("${stats.streaming.fetch-size:1000}")
+    private int fetchSize;
+
+    public HyperLogLog newSketch() {
+        return new HyperLogLog(precision);
+    }
+
+    /**
+     * Добавляет ip хитов в часовые скетчи. Должен вызываться в транзакции записи хитов: строки скетчей
+     * блокируются в фиксированном порядке, поэтому параллельные пачки не теряют обновления друг друга.
+     * Скетч, регистры которого пачка не изменила, не перезаписывается.
+     */
+    public void addHits(List<EncodedHit> hits) {
+        Map<SketchKey, HyperLogLog> increments = new TreeMap<>(KEY_ORDER);
+        for (EncodedHit hit : hits) {
+            SketchKey key = new SketchKey(hit.timestamp().truncatedTo(ChronoUnit.HOURS), hit.appId(), hit.uriId());
+            increments.computeIfAbsent(key, k -> newSketch()).add(hit.ip());
+        }
+
+        byte[] empty = newSketch().toBytes();
+        jdbcTemplate.batchUpdate(INSERT_EMPTY_QUERY, increments.keySet(), increments.size(), (ps, key) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(key.bucket()));
+            ps.setInt(2, key.appId());
+            ps.setInt(3, key.uriId());
+            ps.setBytes(4, empty);
+        });
+
+        List<Object[]> updates = new ArrayList<>(increments.size());
+        for (Map.Entry<SketchKey, HyperLogLog> increment : increments.entrySet()) {
+            SketchKey key = increment.getKey();
+            Timestamp bucket = Timestamp.valueOf(key.bucket());
+            byte[] stored = jdbcTemplate.queryForObject(LOCK_QUERY, byte[].class, bucket, key.appId(), key.uriId());
+            byte[] merged = HyperLogLog.fromBytes(stored).merge(increment.getValue()).toBytes();
+            if (!Arrays.equals(merged, stored)) {
+                updates.add(new Object[]{merged, bucket, key.appId(), key.uriId()});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_QUERY, updates);
+        }
+    }
+
+    /**
+     * Объединяет часовые скетчи в диапазоне [from, to) по каждой паре (app, uri).
+     * appId == null и пустой список uriIds означают отсутствие фильтра по app и uri.
+     */
+    public Map<AppUri, HyperLogLog> mergeSketches(LocalDateTime from, LocalDateTime to, Integer appId,
+                                                  List<Integer> uriIds) {
+        Map<AppUri, HyperLogLog> sketches = new TreeMap<>();
+        if (!from.isBefore(to)) {
+            return sketches;
+        }
+        Object[] parameters = new QueryParameters()
+                .add(Timestamp.valueOf(from), Timestamp.valueOf(to))
+                .addFilters(appId, uriIds)
+                .toArray();
+        String query = SKETCHES_QUERY + QueryParameters.conditions(appId != null, !uriIds.isEmpty());
+        jdbcTemplate.query(query, rs -> {
+            AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            sketches.merge(key, sketch, HyperLogLog::merge);
+        }, parameters);
+        return sketches;
+    }
+
+    /**
+     * Объединяет часовые скетчи в диапазоне [from, to) по интервалам interval и парам (app, uri) и передаёт
+     * consumer скетчи каждого интервала по возрастанию его начала. Скетчи читаются курсором, в памяти
+     * держится только текущий интервал, поэтому метод вызывается в транзакции.
+     */
+    public void mergeSketchesByInterval(LocalDateTime from, LocalDateTime to, Granularity interval, Integer appId,
+                                        List<Integer> uriIds,
+                                        BiConsumer<LocalDateTime, Map<AppUri, HyperLogLog>> consumer) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        String query = String.format(SKETCHES_BY_INTERVAL_TEMPLATE.replace("{interval}", interval.sqlUnit()),
+                QueryParameters.conditions(appId != null, !uriIds.isEmpty()));
+        Object[] parameters = new QueryParameters()
+                .add(Timestamp.valueOf(from), Timestamp.valueOf(to))
+                .addFilters(appId, uriIds)
+                .toArray();
+        IntervalSketches current = new IntervalSketches();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(query);
+            statement.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(parameters).setValues(statement);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            LocalDateTime start = rs.getTimestamp("interval_start").toLocalDateTime();
+            if (!start.equals(current.start)) {
+                current.flush(consumer);
+                current.start = start;
+            }
+            AppUri key = new AppUri(rs.getString("app"), rs.getString("uri"));
+            current.sketches.merge(key, HyperLogLog.fromBytes(rs.getBytes("sketch")), HyperLogLog::merge);
+        });
+        current.flush(consumer);
+    }
+
+    private static final class IntervalSketches {
+        private LocalDateTime start;
+        private Map<AppUri, HyperLogLog> sketches = new TreeMap<>();
+
+        void flush(BiConsumer<LocalDateTime, Map<AppUri, HyperLogLog>> consumer) {
+            if (!sketches.isEmpty()) {
+                consumer.accept(start, sketches);
+                sketches = new TreeMap<>();
+            }
+        }
+    }
+
+    private record SketchKey(LocalDateTime bucket, int appId, int uriId) {
+    }
+}
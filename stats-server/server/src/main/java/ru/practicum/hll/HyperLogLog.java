@@ -0,0 +1,207 @@
+package ru.practicum.hll;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog с явным (explicit) режимом для малых множеств: пока различных хешей немного, хранится их
+ * отсортированный массив и оценка точна; после порога скетч переходит в плотный массив регистров.
+ * Относительная ошибка плотного режима около 1.04 / sqrt(2^precision).
+ */
+public final class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final byte EXPLICIT = 1;
+    private static final byte DENSE = 2;
+
+    private final int precision;
+    private long[] hashes = new long[0];
+    private int hashCount;
+    private byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be in [" + MIN_PRECISION + ", "
+                    + MAX_PRECISION + "], got " + precision);
+        }
+        this.precision = precision;
+    }
+
+    public static double relativeError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public HyperLogLog add(String value) {
+        return addHash(hash(value));
+    }
+
+    public HyperLogLog addHash(long hash) {
+        if (registers != null) {
+            updateRegister(hash);
+            return this;
+        }
+        int position = Arrays.binarySearch(hashes, 0, hashCount, hash);
+        if (position >= 0) {
+            return this;
+        }
+        if (hashCount == explicitThreshold()) {
+            toDense();
+            updateRegister(hash);
+            return this;
+        }
+        int insertAt = -position - 1;
+        if (hashCount == hashes.length) {
+            hashes = Arrays.copyOf(hashes, Math.min(Math.max(4, hashCount * 2), explicitThreshold()));
+        }
+        System.arraycopy(hashes, insertAt, hashes, insertAt + 1, hashCount - insertAt);
+        hashes[insertAt] = hash;
+        hashCount++;
+        return this;
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision < precision) {
+            return other.copy().merge(this);
+        }
+        if (other.registers == null) {
+            for (int i = 0; i < other.hashCount; i++) {
+                addHash(other.hashes[i]);
+            }
+            return this;
+        }
+        if (registers == null) {
+            toDense();
+        }
+        int shift = other.precision - precision;
+        for (int index = 0; index < other.registers.length; index++) {
+            int rank = other.registers[index];
+            if (rank == 0) {
+                continue;
+            }
+            int target = index >>> shift;
+            int droppedBits = index & ((1 << shift) - 1);
+            int foldedRank = droppedBits == 0
+                    ? shift + rank
+                    : Integer.numberOfLeadingZeros(droppedBits) - (32 - shift) + 1;
+            registers[target] = (byte) Math.max(registers[target], foldedRank);
+        }
+        return this;
+    }
+
+    public long estimate() {
+        if (registers == null) {
+            return hashCount;
+        }
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        copy.hashes = Arrays.copyOf(hashes, hashes.length);
+        copy.hashCount = hashCount;
+        copy.registers = registers == null ? null : registers.clone();
+        return copy;
+    }
+
+    public byte[] toBytes() {
+        if (registers == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(6 + hashCount * Long.BYTES)
+                    .put(EXPLICIT)
+                    .put((byte) precision)
+                    .putInt(hashCount);
+            for (int i = 0; i < hashCount; i++) {
+                buffer.putLong(hashes[i]);
+            }
+            return buffer.array();
+        }
+        return ByteBuffer.allocate(2 + registers.length)
+                .put(DENSE)
+                .put((byte) precision)
+                .put(registers)
+                .array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte type = buffer.get();
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        if (type == EXPLICIT) {
+            int count = buffer.getInt();
+            sketch.hashes = new long[count];
+            for (int i = 0; i < count; i++) {
+                sketch.hashes[i] = buffer.getLong();
+            }
+            sketch.hashCount = count;
+        } else if (type == DENSE) {
+            sketch.registers = new byte[1 << sketch.precision];
+            buffer.get(sketch.registers);
+        } else {
+            throw new IllegalArgumentException("Unknown HyperLogLog format: " + type);
+        }
+        return sketch;
+    }
+
+    private int explicitThreshold() {
+        return (1 << precision) / Long.BYTES;
+    }
+
+    private void toDense() {
+        registers = new byte[1 << precision];
+        for (int i = 0; i < hashCount; i++) {
+            updateRegister(hashes[i]);
+        }
+        hashes = new long[0];
+        hashCount = 0;
+    }
+
+    private void updateRegister(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        long remainder = hash << precision;
+        int rank = remainder == 0 ? Long.SIZE - precision + 1 : Long.numberOfLeadingZeros(remainder) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
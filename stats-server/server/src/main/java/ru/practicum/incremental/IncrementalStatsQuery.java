@@ -0,0 +1,124 @@
+package ru.practicum.incremental;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsRepository;
+import ru.practicum.TopViewStats;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+import ru.practicum.rollup.Granularity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Инкрементальный подсчёт /stats для запросов "от start до текущего момента". По ключу (start, app, uri, unique)
+ * хранится результат за префикс [start, watermark), где watermark - начало часа не позже now - {@code settle}.
+ * Запрос читает из БД только хвост [watermark, end] и складывает его с префиксом: хиты суммируются, скетчи
+ * уникальных ip объединяются. Префикс продлевается до новой границы часа запросом за прошедший час.
+ * Хиты с created раньше now - settle, записанные после подсчёта префикса, в нём не учитываются.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.incremental.enabled", havingValue = "true")
+public class IncrementalStatsQuery {
+    private final StatsRepository statsRepository;
+    private final Cache<PrefixKey, Prefix> prefixes;
+    private final Duration settle;
+    private final Supplier<LocalDateTime> clock;
+
+    @Autowired
+    public IncrementalStatsQuery(StatsRepository statsRepository, MeterRegistry meterRegistry,
+                                 @Value("${stats.incremental.max-rows:20000}") long maxRows,
+                                 @Value("${stats.incremental.idle-timeout:PT1H}") Duration idleTimeout,
+                                 @Value("${stats.incremental.settle:PT1M}") Duration settle) {
+        this(statsRepository, meterRegistry, maxRows, idleTimeout, settle, LocalDateTime::now, Ticker.systemTicker());
+    }
+
+    IncrementalStatsQuery(StatsRepository statsRepository, MeterRegistry meterRegistry, long maxRows,
+                          Duration idleTimeout, Duration settle, Supplier<LocalDateTime> clock, Ticker ticker) {
+        this.statsRepository = statsRepository;
+        this.settle = settle;
+        this.clock = clock;
+        this.prefixes = Caffeine.newBuilder()
+                .maximumWeight(maxRows)
+                .weigher((PrefixKey key, Prefix prefix) -> prefix.size() + 1)
+                .expireAfterAccess(idleTimeout)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, prefixes, "stats.incremental");
+    }
+
+    /**
+     * Ответ из префикса и хвоста либо пустой Optional, если запрос считается целиком: точные уникальные,
+     * уникальные без скетчей в хранилище, период без целого часа до now - settle или end раньше уже
+     * сохранённого префикса.
+     */
+    public Optional<List<ViewStats>> query(ViewsStatsRequest request) {
+        if (request.isUnique() && request.isExact()) {
+            return Optional.empty();
+        }
+        LocalDateTime end = request.getEnd().plus(1, ChronoUnit.MICROS);
+        LocalDateTime settled = clock.get().minus(settle);
+        LocalDateTime watermark = Granularity.HOUR.floor(end.isBefore(settled) ? end : settled);
+        if (!request.getStart().isBefore(watermark)) {
+            return Optional.empty();
+        }
+
+        PrefixKey key = PrefixKey.of(request);
+        Prefix prefix = prefixes.getIfPresent(key);
+        if (prefix == null) {
+            prefix = Prefix.empty(request.getStart());
+        } else if (prefix.watermark().isAfter(watermark)) {
+            return Optional.empty();
+        }
+        if (prefix.watermark().isBefore(watermark)) {
+            Optional<Prefix> passed = aggregate(request, prefix.watermark(), watermark);
+            if (passed.isEmpty()) {
+                return Optional.empty();
+            }
+            prefix = prefix.plus(passed.get());
+            prefixes.asMap().merge(key, prefix, (stored, extended) ->
+                    extended.watermark().isAfter(stored.watermark()) ? extended : stored);
+        }
+        Prefix stored = prefix;
+        return aggregate(request, watermark, end)
+                .map(tail -> TopViewStats.page(stored.plus(tail).toStats(), request));
+    }
+
+    long size() {
+        prefixes.cleanUp();
+        return prefixes.estimatedSize();
+    }
+
+    /**
+     * Хиты или скетчи уникальных ip по всем парам (app, uri) запроса за период [from, to);
+     * пустой Optional, если хранилище не ведёт скетчей.
+     */
+    private Optional<Prefix> aggregate(ViewsStatsRequest request, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return Optional.of(Prefix.empty(to));
+        }
+        ViewsStatsRequest period = request.toBuilder()
+                .start(from)
+                .end(to.minus(1, ChronoUnit.MICROS))
+                .limit(null)
+                .offset(0)
+                .build();
+        if (request.isUnique()) {
+            return statsRepository.getUniqueSketches(period).map(sketches -> Prefix.ofSketches(to, sketches));
+        }
+        return Optional.of(Prefix.ofHits(to, statsRepository.getStats(period)));
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.incremental;
+
+import ru.practicum.ViewStats;
+import ru.practicum.hll.HyperLogLog;
+import ru.practicum.model.AppUri;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Частичный результат по парам (app, uri) за период до watermark (не включая): число хитов либо скетч
+ * уникальных ip. Не изменяется после создания, поэтому один префикс читают одновременные запросы.
+ */
+record Prefix(LocalDateTime watermark, Map<AppUri, Long> hits, Map<AppUri, HyperLogLog> sketches) {
+
+    static Prefix empty(LocalDateTime watermark) {
+        return new Prefix(watermark, Map.of(), Map.of());
+    }
+
+    static Prefix ofHits(LocalDateTime watermark, List<ViewStats> stats) {
+        Map<AppUri, Long> hits = new HashMap<>();
+        for (ViewStats viewStats : stats) {
+            hits.merge(new AppUri(viewStats.getApp(), viewStats.getUri()), viewStats.getHits(), Long::sum);
+        }
+        return new Prefix(watermark, hits, Map.of());
+    }
+
+    static Prefix ofSketches(LocalDateTime watermark, Map<AppUri, HyperLogLog> sketches) {
+        return new Prefix(watermark, Map.of(), sketches);
+    }
+
+    /**
+     * Префикс, продолженный следующим за ним периодом next; скетчи этого префикса не изменяются.
+     */
+    Prefix plus(Prefix next) {
+        Map<AppUri, Long> mergedHits = new HashMap<>(hits);
+        next.hits.forEach((key, value) -> mergedHits.merge(key, value, Long::sum));
+        Map<AppUri, HyperLogLog> mergedSketches = new HashMap<>(sketches);
+        next.sketches.forEach((key, sketch) -> mergedSketches.merge(key, sketch, (left, right) ->
+                left.copy().merge(right)));
+        return new Prefix(next.watermark, mergedHits, mergedSketches);
+    }
+
+    Stream<ViewStats> toStats() {
+        Stream<ViewStats> totals = hits.entrySet().stream()
+                .map(entry -> stats(entry.getKey(), entry.getValue()));
+        Stream<ViewStats> unique = sketches.entrySet().stream()
+                .map(entry -> stats(entry.getKey(), entry.getValue().estimate()));
+        return Stream.concat(totals, unique);
+    }
+
+    int size() {
+        return hits.size() + sketches.size();
+    }
+
+    private static ViewStats stats(AppUri key, long hits) {
+        return ViewStats.builder()
+                .app(key.app())
+                .uri(key.uri())
+                .hits(hits)
+                .build();
+    }
+}
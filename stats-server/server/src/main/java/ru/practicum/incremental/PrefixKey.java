@@ -0,0 +1,19 @@
+package ru.practicum.incremental;
+
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запросы с одним началом периода и одними фильтрами делят префикс независимо от end и страницы.
+ */
+record PrefixKey(LocalDateTime start, String application, List<String> uris, boolean unique) {
+
+    static PrefixKey of(ViewsStatsRequest request) {
+        return new PrefixKey(request.getStart(),
+                request.hasApplicationCondition() ? request.getApplication() : null,
+                request.getUris().stream().distinct().sorted().toList(),
+                request.isUnique());
+    }
+}
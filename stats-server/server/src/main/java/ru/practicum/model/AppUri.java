@@ -0,0 +1,15 @@
+package ru.practicum.model;
+
+import ru.practicum.ViewStats;
+
+import java.util.Comparator;
+
+public record AppUri(String app, String uri) implements Comparable<AppUri> {
+    private static final Comparator<AppUri> ORDER = Comparator.comparing(AppUri::app, ViewStats.NAME_ORDER)
+            .thenComparing(AppUri::uri, ViewStats.NAME_ORDER);
+
+    @Override
+    public int compareTo(AppUri other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.practicum.partition;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+public enum PartitionInterval {
+    DAY(DateTimeFormatter.ofPattern("yyyyMMdd")) {
+        @Override
+        public LocalDate floor(LocalDate date) {
+            return date;
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusDays(1);
+        }
+
+        @Override
+        public LocalDate parse(String suffix) {
+            return LocalDate.parse(suffix, formatter());
+        }
+    },
+    MONTH(DateTimeFormatter.ofPattern("yyyyMM")) {
+        @Override
+        public LocalDate floor(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(1);
+        }
+
+        @Override
+        public LocalDate parse(String suffix) {
+            return LocalDate.parse(suffix + "01", DateTimeFormatter.ofPattern("yyyyMMdd"));
+        }
+    };
+
+    private final DateTimeFormatter formatter;
+
+    PartitionInterval(DateTimeFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    public abstract LocalDate floor(LocalDate date);
+
+    public abstract LocalDate next(LocalDate start);
+
+    public abstract LocalDate parse(String suffix);
+
+    public String format(LocalDate start) {
+        return formatter.format(start);
+    }
+
+    protected DateTimeFormatter formatter() {
+        return formatter;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.practicum.partition;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Ведёт нативные партиции Postgres таблицы stats по полю created: заранее создаёт партиции
+ * на {@code premake} интервалов вперёд и удаляет (или отсоединяет) партиции старше срока хранения.
+ * Хиты, для которых партиции нет, попадают в stats_default; при создании партиции они переносятся в неё.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.partition.enabled", havingValue = "true")
+public class PartitionManager {
+    static final String PARTITION_PREFIX = "stats_p";
+
+    private static final String IS_PARTITIONED_QUERY = "SELECT COUNT(*) FROM pg_partitioned_table pt " +
+            "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = 'stats'";
+    private static final String PARTITIONS_QUERY = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = 'stats' AND c.relname LIKE 'stats\\_p%'";
+    private static final String EXISTS_QUERY = "SELECT to_regclass(?) IS NOT NULL";
+    private static final String MOVE_DEFAULT_QUERY_TEMPLATE = "WITH moved AS (DELETE FROM stats_default " +
+            "WHERE created >= ? AND created < ? RETURNING *) INSERT INTO %s SELECT * FROM moved";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.partition.interval:DAY}")
+    private PartitionInterval interval;
+
+    @Value("${stats.partition.premake:7}")
+    private int premake;
+
+    @Value("${stats.partition.retention-days:0}")
+    private int retentionDays;
+
+    @Value("${stats.partition.retention-action:DROP}")
+    private RetentionAction retentionAction;
+
+    @PostConstruct
+    public void init() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partition.maintenance-cron:0 5 0 * * *}")
+    public void maintain() {
+        try {
+            if (!isPartitioned()) {
+                log.warn("Table stats is not partitioned, partition maintenance is skipped.");
+                return;
+            }
+            maintain(LocalDateTime.now());
+        } catch (DataAccessException e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    void maintain(LocalDateTime now) {
+        LocalDate start = interval.floor(now.toLocalDate());
+        for (int i = 0; i <= premake; i++) {
+            createPartition(start);
+            start = interval.next(start);
+        }
+        if (retentionDays > 0) {
+            applyRetention(now.toLocalDate().minusDays(retentionDays));
+        }
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(IS_PARTITIONED_QUERY, Integer.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Создаёт партицию отдельной таблицей, переносит в неё хиты периода из stats_default и присоединяет к stats
+     * в одной транзакции: иначе CREATE ... PARTITION OF отказывает, пока в stats_default есть строки периода.
+     * На время переноса stats_default блокируется для записи, чтобы новые хиты периода не попали туда
+     * между переносом и присоединением.
+     */
+    private void createPartition(LocalDate start) {
+        String name = PARTITION_PREFIX + interval.format(start);
+        LocalDate end = interval.next(start);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_QUERY, Boolean.class, name))) {
+                    return;
+                }
+                jdbcTemplate.execute("LOCK TABLE stats_default IN EXCLUSIVE MODE");
+                jdbcTemplate.execute(String.format("CREATE TABLE %s (LIKE stats INCLUDING DEFAULTS)", name));
+                int moved = jdbcTemplate.update(String.format(MOVE_DEFAULT_QUERY_TEMPLATE, name),
+                        start.atStartOfDay(), end.atStartOfDay());
+                jdbcTemplate.execute(String.format(
+                        "ALTER TABLE stats ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')", name, start, end));
+                if (moved > 0) {
+                    log.info("Moved {} hits from stats_default to partition {}", moved, name);
+                }
+            });
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Cannot create partition {}, hits stay in stats_default: {}", name, e.getMessage());
+        }
+    }
+
+    private void applyRetention(LocalDate cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(PARTITIONS_QUERY, String.class);
+        for (String partition : partitions) {
+            LocalDate start;
+            try {
+                start = interval.parse(partition.substring(PARTITION_PREFIX.length()));
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (interval.next(start).isAfter(cutoff)) {
+                continue;
+            }
+            if (retentionAction == RetentionAction.DETACH) {
+                jdbcTemplate.execute("ALTER TABLE stats DETACH PARTITION " + partition);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            log.info("Partition {} expired and was {}", partition, retentionAction == RetentionAction.DETACH ? "detached" : "dropped");
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM stats_default WHERE created < ?", cutoff.atStartOfDay());
+        if (deleted > 0) {
+            log.info("Deleted {} expired hits from stats_default", deleted);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.partition;
+
+public enum RetentionAction {
+    DROP,
+    DETACH
+}
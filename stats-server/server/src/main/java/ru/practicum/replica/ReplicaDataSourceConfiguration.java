@@ -0,0 +1,76 @@
+package ru.practicum.replica;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разделяет запись и чтение: основной пул spring.datasource.* и по пулу на каждую реплику из stats.replicas.urls.
+ * Общий DataSource откладывает выбор соединения до первого выражения, к этому моменту транзакция
+ * {@code @Transactional(readOnly = true)} уже пометила соединение read-only и получает его у реплики.
+ * Запись и чтения вне read-only транзакций идут на основной сервер.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "stats.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("stats-primary");
+        return dataSource;
+    }
+
+    /**
+     * Пулы реплик наследуют настройки основного пула, кроме адреса, учётных данных и размера.
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaDataSource(HikariDataSource primaryDataSource, MeterRegistry meterRegistry,
+                                                      @Value("${stats.replicas.urls}") List<String> urls,
+                                                      @Value("${stats.replicas.username:${spring.datasource.username}}") String username,
+                                                      @Value("${stats.replicas.password:${spring.datasource.password}}") String password,
+                                                      @Value("${stats.replicas.pool-size:10}") int poolSize,
+                                                      @Value("${stats.replicas.max-lag:PT10S}") Duration maxLag,
+                                                      @Value("${stats.replicas.lag-query}") String lagQuery) {
+        if (urls.isEmpty()) {
+            throw new IllegalStateException("stats.replicas.urls must list at least one replica");
+        }
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(urls.get(i).trim());
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setMaximumPoolSize(poolSize);
+            config.setPoolName("stats-replica-" + i);
+            // Недоступная при старте реплика не мешает запуску: проверка отставания исключит её из чтений
+            config.setInitializationFailTimeout(-1);
+            replicas.put(config.getPoolName(), new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag, lagQuery, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.practicum.replica;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник соединений для read-only транзакций: выдаёт соединения реплик по кругу, пропуская реплики, чьё
+ * отставание по последней проверке больше maxLag или не известно. Если подходящих реплик нет, соединение
+ * берётся у основного сервера. Отставание каждой реплики раз в {@code lag-check-interval} читается запросом
+ * lagQuery в секундах; реплика, не отдавшая соединение, исключается до следующей проверки.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final double maxLagSeconds;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter fallbackCounter;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                    String lagQuery, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.lagQuery = lagQuery;
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource);
+            this.replicas.add(replica);
+            Gauge.builder("stats.replicas.lag", replica, r -> r.lagSeconds)
+                    .description("Replication lag seen by the last check, NaN when the replica is unreachable")
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        });
+        this.fallbackCounter = Counter.builder("stats.replicas.fallbacks")
+                .description("Read-only connections taken from the primary because no replica was usable")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (!replica.usable(maxLagSeconds)) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                log.warn("Replica {} is unreachable, excluding it until the next lag check", replica.name, e);
+                replica.lagSeconds = Double.NaN;
+            }
+        }
+        fallbackCounter.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Replica connections use the configured credentials");
+    }
+
+    @Scheduled(fixedDelayString = "${stats.replicas.lag-check-interval:PT5S}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            double lagSeconds;
+            try {
+                Double lag = new JdbcTemplate(replica.dataSource).queryForObject(lagQuery, Double.class);
+                lagSeconds = lag != null ? lag : Double.NaN;
+            } catch (RuntimeException e) {
+                log.warn("Failed to check lag of replica {}", replica.name, e);
+                lagSeconds = Double.NaN;
+            }
+            boolean usable = lagSeconds <= maxLagSeconds;
+            if (replica.usable(maxLagSeconds) != usable || !replica.checked) {
+                log.info("Replica {} lags {} s, {}", replica.name, lagSeconds, usable ? "reading from it"
+                        : "reading from other replicas or the primary");
+            }
+            replica.lagSeconds = lagSeconds;
+            replica.checked = true;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // До первой проверки отставание не известно, и чтения идут на основной сервер
+        private volatile double lagSeconds = Double.NaN;
+        private boolean checked;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        boolean usable(double maxLagSeconds) {
+            return lagSeconds <= maxLagSeconds;
+        }
+    }
+}
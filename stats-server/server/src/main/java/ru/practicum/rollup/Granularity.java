@@ -0,0 +1,51 @@
+package ru.practicum.rollup;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+public enum Granularity {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    Granularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+
+    public LocalDateTime next(LocalDateTime bucket) {
+        return bucket.plus(1, unit);
+    }
+
+    /**
+     * Начало интервала для времени в миллисекундах от эпохи по UTC.
+     */
+    public long floorMillis(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, unit.getDuration().toMillis());
+    }
+
+    /**
+     * Число интервалов, которые задевает диапазон [from, to).
+     */
+    public long bucketsBetween(LocalDateTime from, LocalDateTime to) {
+        return unit.between(floor(from), ceil(to));
+    }
+
+    /**
+     * Единица для date_trunc в Postgres.
+     */
+    public String sqlUnit() {
+        return unit.name().substring(0, unit.name().length() - 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.rollup;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбиение диапазона запроса на участки фиксированной формы: до двух «рваных» краёв по сырым данным,
+ * до двух участков из минутных и часовых агрегатов и один участок из дневных. Незадействованные участки пусты,
+ * поэтому текст SQL не зависит от диапазона.
+ */
+public record RollupPlan(List<TimeRange> raw, List<TimeRange> minutes, List<TimeRange> hours, TimeRange days) {
+
+    public Object[] rawParameters() {
+        List<Object> parameters = new ArrayList<>();
+        addRanges(parameters, raw);
+        return parameters.toArray();
+    }
+
+    public Object[] rollupParameters() {
+        List<Object> parameters = new ArrayList<>();
+        addRanges(parameters, minutes);
+        addRanges(parameters, hours);
+        addRanges(parameters, List.of(days));
+        return parameters.toArray();
+    }
+
+    private static void addRanges(List<Object> parameters, List<TimeRange> ranges) {
+        for (TimeRange range : ranges) {
+            parameters.add(Timestamp.valueOf(range.from()));
+            parameters.add(Timestamp.valueOf(range.to()));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.rollup;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class RollupQueryPlanner {
+    private static final int MAX_SEGMENTS_PER_LEVEL = 2;
+
+    public RollupPlan plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, Granularity.DAY);
+    }
+
+    /**
+     * План без агрегатов крупнее coarsest: каждый участок целиком лежит в одном интервале coarsest,
+     * поэтому по нему можно строить гистограмму с таким шагом.
+     */
+    public RollupPlan plan(LocalDateTime from, LocalDateTime to, Granularity coarsest) {
+        List<TimeRange> raw = new ArrayList<>();
+        Map<Granularity, List<TimeRange>> rollups = new EnumMap<>(Granularity.class);
+        for (Granularity granularity : Granularity.values()) {
+            rollups.put(granularity, new ArrayList<>());
+        }
+        if (from.isBefore(to)) {
+            split(new TimeRange(from, to), coarsest.ordinal(), raw, rollups);
+        }
+        return new RollupPlan(
+                pad(raw, MAX_SEGMENTS_PER_LEVEL, from),
+                pad(rollups.get(Granularity.MINUTE), MAX_SEGMENTS_PER_LEVEL, from),
+                pad(rollups.get(Granularity.HOUR), MAX_SEGMENTS_PER_LEVEL, from),
+                pad(rollups.get(Granularity.DAY), 1, from).get(0)
+        );
+    }
+
+    private void split(TimeRange range, int level, List<TimeRange> raw, Map<Granularity, List<TimeRange>> rollups) {
+        if (range.isEmpty()) {
+            return;
+        }
+        if (level < 0) {
+            raw.add(range);
+            return;
+        }
+        Granularity granularity = Granularity.values()[level];
+        LocalDateTime alignedFrom = granularity.ceil(range.from());
+        LocalDateTime alignedTo = granularity.floor(range.to());
+        if (!alignedFrom.isBefore(alignedTo)) {
+            split(range, level - 1, raw, rollups);
+            return;
+        }
+        rollups.get(granularity).add(new TimeRange(alignedFrom, alignedTo));
+        split(new TimeRange(range.from(), alignedFrom), level - 1, raw, rollups);
+        split(new TimeRange(alignedTo, range.to()), level - 1, raw, rollups);
+    }
+
+    private List<TimeRange> pad(List<TimeRange> ranges, int size, LocalDateTime at) {
+        if (ranges.size() > size) {
+            throw new IllegalStateException("Unexpected number of segments in rollup plan: " + ranges);
+        }
+        List<TimeRange> padded = new ArrayList<>(ranges);
+        while (padded.size() < size) {
+            padded.add(TimeRange.empty(at));
+        }
+        return List.copyOf(padded);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.practicum.rollup;
+
+import java.time.LocalDateTime;
+
+/**
+ * Полуоткрытый интервал [from, to).
+ */
+public record TimeRange(LocalDateTime from, LocalDateTime to) {
+
+    public static TimeRange empty(LocalDateTime at) {
+        return new TimeRange(at, at);
+    }
+
+    public boolean isEmpty() {
+        return !from.isBefore(to);
+    }
+}
@@ -0,0 +1,265 @@
+package ru.practicum.segment;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Файл сегмента лога хитов, отображённый в память целиком. Записи фиксированной длины:
+ * <pre>
+ * 0  long  timestamp, мс от эпохи по локальному времени
+ * 8  long  старшие 8 байт ip (IPv4 - в виде ::ffff:a.b.c.d)
+ * 16 long  младшие 8 байт ip
+ * 24 int   id uri
+ * 28 int   id app
+ * 32 int   CRC32C байтов 0..31
+ * </pre>
+ * Записью считается только слот с верной контрольной суммой; при открытии сегмент читается до первого неверного
+ * слота, так что запись, оборванная падением процесса, отбрасывается.
+ * <p>
+ * Разреженный индекс времени - минимальный и максимальный timestamp каждого блока из {@code blockSize} записей:
+ * чтение пропускает сегменты и блоки, не пересекающие запрошенный период. У закрытого сегмента индекс
+ * сохраняется рядом в файле {@code .idx}, чтобы при старте не перечитывать данные.
+ * <p>
+ * Пишет один поток; читатели видят записи до {@link #count()}, который публикуется после записи.
+ */
+class Segment implements AutoCloseable {
+    static final int RECORD_SIZE = 36;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x53544c47;
+    private static final int VERSION = 1;
+    private static final int CHECKSUM_OFFSET = 32;
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int blockSize;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private final CRC32C crc = new CRC32C();
+
+    private volatile int count;
+    private volatile long minTimestamp = Long.MAX_VALUE;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+
+    private Segment(long baseOffset, Path path, FileChannel channel, int capacity, int blockSize) throws IOException {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.blockSize = blockSize;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        int blocks = (capacity + blockSize - 1) / blockSize;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        Arrays.fill(blockMin, Long.MAX_VALUE);
+        Arrays.fill(blockMax, Long.MIN_VALUE);
+    }
+
+    static Segment create(Path directory, long baseOffset, int capacity, int blockSize) throws IOException {
+        Path path = directory.resolve(fileName(baseOffset));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(baseOffset, path, channel, capacity, blockSize);
+        segment.buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, capacity);
+        segment.buffer.force();
+        return segment;
+    }
+
+    /**
+     * Открывает существующий сегмент: индекс берётся из {@code .idx}, если он есть и совпадает с данными,
+     * иначе восстанавливается просмотром записей.
+     */
+    static Segment open(Path path, int blockSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException("Not a hit log segment: " + path);
+        }
+        Segment segment = new Segment(baseOffsetOf(path), path, channel, header.getInt(12), blockSize);
+        if (!segment.loadIndex()) {
+            segment.recover();
+        }
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith("segment-") && name.endsWith(".log");
+    }
+
+    static long baseOffsetOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    boolean overlaps(long fromMillis, long toMillis) {
+        return count > 0 && minTimestamp <= toMillis && maxTimestamp >= fromMillis;
+    }
+
+    /**
+     * Дописывает запись; вызывается только потоком-писателем и только пока сегмент не заполнен.
+     */
+    void append(long timestamp, long ipHigh, long ipLow, int uriId, int appId) {
+        int index = count;
+        int position = HEADER_SIZE + index * RECORD_SIZE;
+        buffer.putLong(position, timestamp)
+                .putLong(position + 8, ipHigh)
+                .putLong(position + 16, ipLow)
+                .putInt(position + 24, uriId)
+                .putInt(position + 28, appId);
+        buffer.putInt(position + CHECKSUM_OFFSET, checksum(position));
+        int block = index / blockSize;
+        blockMin[block] = Math.min(blockMin[block], timestamp);
+        blockMax[block] = Math.max(blockMax[block], timestamp);
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        count = index + 1;
+    }
+
+    /**
+     * Передаёт в visitor записи с timestamp в [fromMillis, toMillis] вместе с их номером в логе,
+     * пропуская блоки вне периода.
+     */
+    void scan(long fromMillis, long toMillis, RecordVisitor visitor) {
+        int visible = count;
+        for (int block = 0; block * blockSize < visible; block++) {
+            if (blockMin[block] > toMillis || blockMax[block] < fromMillis) {
+                continue;
+            }
+            int end = Math.min(visible, (block + 1) * blockSize);
+            for (int index = block * blockSize; index < end; index++) {
+                int position = HEADER_SIZE + index * RECORD_SIZE;
+                long timestamp = buffer.getLong(position);
+                if (timestamp >= fromMillis && timestamp <= toMillis) {
+                    visitor.visit(baseOffset + index, timestamp, buffer.getLong(position + 8), buffer.getLong(position + 16),
+                            buffer.getInt(position + 24), buffer.getInt(position + 28));
+                }
+            }
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Сбрасывает данные на диск и сохраняет индекс закрытого сегмента.
+     */
+    void seal() throws IOException {
+        force();
+        Path index = indexPath();
+        Path temporary = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+            out.writeInt(count);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            for (int block = 0; block < blockMin.length; block++) {
+                out.writeLong(blockMin[block]);
+                out.writeLong(blockMax[block]);
+            }
+        }
+        Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean loadIndex() throws IOException {
+        Path index = indexPath();
+        if (!Files.exists(index) || Files.size(index) != 20L + 16L * blockMin.length) {
+            return false;
+        }
+        try (InputStream stream = Files.newInputStream(index); DataInputStream in = new DataInputStream(stream)) {
+            int indexedCount = in.readInt();
+            if (indexedCount < 0 || indexedCount > capacity || !isValid(indexedCount - 1) || isValid(indexedCount)) {
+                return false;
+            }
+            minTimestamp = in.readLong();
+            maxTimestamp = in.readLong();
+            for (int block = 0; block < blockMin.length; block++) {
+                blockMin[block] = in.readLong();
+                blockMax[block] = in.readLong();
+            }
+            count = indexedCount;
+            return true;
+        }
+    }
+
+    private void recover() {
+        int index = 0;
+        while (isValid(index)) {
+            int position = HEADER_SIZE + index * RECORD_SIZE;
+            long timestamp = buffer.getLong(position);
+            int block = index / blockSize;
+            blockMin[block] = Math.min(blockMin[block], timestamp);
+            blockMax[block] = Math.max(blockMax[block], timestamp);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            index++;
+        }
+        count = index;
+    }
+
+    /**
+     * Слот с номером index содержит целую запись; для index = -1 (пустой сегмент) - истина.
+     */
+    private boolean isValid(int index) {
+        if (index < 0) {
+            return true;
+        }
+        if (index >= capacity) {
+            return false;
+        }
+        int position = HEADER_SIZE + index * RECORD_SIZE;
+        return buffer.getInt(position + CHECKSUM_OFFSET) == checksum(position);
+    }
+
+    private int checksum(int position) {
+        crc.reset();
+        crc.update(buffer.slice(position, CHECKSUM_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    private Path indexPath() {
+        return path.resolveSibling(path.getFileName().toString().replace(".log", ".idx"));
+    }
+
+    static String fileName(long baseOffset) {
+        return String.format("segment-%020d.log", baseOffset);
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long offset, long timestamp, long ipHigh, long ipLow, int uriId, int appId);
+    }
+}
@@ -0,0 +1,139 @@
+package ru.practicum.segment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Словарь app и uri для лога хитов: строке присваивается следующий id своего вида, пара дописывается в файл
+ * и сбрасывается на диск до того, как id попадёт в сегмент. Запись файла: вид (byte), длина (short), UTF-8,
+ * CRC32C. При открытии файл читается до первой неполной или испорченной записи и обрезается по ней.
+ */
+class SegmentDictionary implements AutoCloseable {
+    static final byte APP = 0;
+    static final byte URI = 1;
+
+    private static final int ENTRY_OVERHEAD = 1 + Short.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    // Отсортированы, чтобы шаблоны uri искались по диапазону ключей с общим началом
+    private final List<NavigableMap<String, Integer>> ids = List.of(new ConcurrentSkipListMap<>(),
+            new ConcurrentSkipListMap<>());
+    private final List<List<String>> values = List.of(new ArrayList<>(), new ArrayList<>());
+
+    SegmentDictionary(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        load();
+    }
+
+    /**
+     * Id значения, при необходимости созданный.
+     */
+    synchronized int intern(byte kind, String value) throws IOException {
+        Integer id = ids.get(kind).get(value);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Dictionary value is too long: " + bytes.length + " bytes");
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_OVERHEAD + bytes.length)
+                .put(kind)
+                .putShort((short) bytes.length)
+                .put(bytes);
+        entry.putInt(checksum(entry.array(), 0, entry.position()));
+        entry.flip();
+        while (entry.hasRemaining()) {
+            channel.write(entry, channel.size());
+        }
+        channel.force(false);
+        return add(kind, value);
+    }
+
+    /**
+     * Id значения или -1, если его нет в словаре.
+     */
+    int find(byte kind, String value) {
+        return ids.get(kind).getOrDefault(value, -1);
+    }
+
+    /**
+     * Id значений, начинающихся с prefix и принятых фильтром.
+     */
+    List<Integer> findMatching(byte kind, String prefix, Predicate<String> filter) {
+        List<Integer> found = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : ids.get(kind).tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (filter.test(entry.getKey())) {
+                found.add(entry.getValue());
+            }
+        }
+        return found;
+    }
+
+    String value(byte kind, int id) {
+        List<String> kindValues = values.get(kind);
+        synchronized (this) {
+            return kindValues.get(id - 1);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void load() throws IOException {
+        ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+        while (content.hasRemaining() && channel.read(content, content.position()) >= 0) {
+            // читается целиком
+        }
+        content.flip();
+        int valid = 0;
+        while (content.remaining() >= ENTRY_OVERHEAD) {
+            byte kind = content.get(valid);
+            int length = content.getShort(valid + 1);
+            int end = valid + 1 + Short.BYTES + length;
+            if (kind != APP && kind != URI || length < 0 || end + Integer.BYTES > content.limit()
+                    || content.getInt(end) != checksum(content.array(), valid, end)) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            content.get(valid + 1 + Short.BYTES, bytes);
+            add(kind, new String(bytes, StandardCharsets.UTF_8));
+            valid = end + Integer.BYTES;
+            content.position(valid);
+        }
+        if (valid < channel.size()) {
+            channel.truncate(valid);
+        }
+    }
+
+    private int add(byte kind, String value) {
+        List<String> kindValues = values.get(kind);
+        int id = kindValues.size() + 1;
+        kindValues.add(value);
+        ids.get(kind).put(value, id);
+        return id;
+    }
+
+    private static int checksum(byte[] array, int from, int to) {
+        CRC32C crc = new CRC32C();
+        crc.update(array, from, to - from);
+        return (int) crc.getValue();
+    }
+}
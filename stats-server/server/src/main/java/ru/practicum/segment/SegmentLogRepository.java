@@ -0,0 +1,345 @@
+package ru.practicum.segment;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.TopViewStats;
+import ru.practicum.UriPatterns;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewStatsBucket;
+import ru.practicum.ViewsStatsRequest;
+import ru.practicum.dictionary.IpAddresses;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище хитов в локальных файлах вместо Postgres: append-only лог из сегментов фиксированной ёмкости,
+ * отображённых в память, и словарь app/uri рядом с ними. Сегменты и их блоки, не пересекающие запрошенный
+ * период, не читаются. Содержимое отображённых страниц переживает падение процесса; на диск активный сегмент
+ * сбрасывается раз в {@code force-interval} и при переходе на новый сегмент.
+ * <p>
+ * Данные видит только этот экземпляр сервера.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage", havingValue = "log")
+public class SegmentLogRepository implements StatsRepository {
+    private static final long IPV4_MAPPED_PREFIX = 0xffffL << 32;
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final int indexInterval;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    private SegmentDictionary dictionary;
+    private Segment active;
+
+    public SegmentLogRepository(@Value("${stats.log.directory:stats-log}") Path directory,
+                                @Value("${stats.log.segment-records:1048576}") int segmentRecords,
+                                @Value("${stats.log.index-interval:1024}") int indexInterval) {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.indexInterval = indexInterval;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        long startedAt = System.nanoTime();
+        Files.createDirectories(directory);
+        dictionary = new SegmentDictionary(directory.resolve("dictionary.log"));
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(Segment::isSegmentFile)
+                    .sorted(Comparator.comparingLong(Segment::baseOffsetOf))
+                    .toList();
+        }
+        long records = 0;
+        for (Path file : files) {
+            Segment segment = Segment.open(file, indexInterval);
+            segments.add(segment);
+            records += segment.count();
+        }
+        active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || active.isFull()) {
+            roll();
+        }
+        log.info("Hit log opened in {}: {} segments, {} hits, {} ms",
+                directory, segments.size(), records, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.log.force-interval:PT1S}")
+    public void force() {
+        Segment current = active;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        if (dictionary != null) {
+            dictionary.close();
+        }
+    }
+
+    @Override
+    public void saveHit(EndpointHit hit) {
+        saveHits(List.of(hit));
+    }
+
+    @Override
+    public synchronized void saveHits(List<EndpointHit> hits) {
+        try {
+            for (EndpointHit hit : hits) {
+                int appId = dictionary.intern(SegmentDictionary.APP, hit.getApp());
+                int uriId = dictionary.intern(SegmentDictionary.URI, hit.getUri());
+                long[] ip = toBits(hit.getIp());
+                if (active.isFull()) {
+                    roll();
+                }
+                active.append(toMillis(hit.getTimestamp()), ip[0], ip[1], uriId, appId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append hits to the log", e);
+        }
+    }
+
+    @Override
+    public List<ViewStats> getStats(ViewsStatsRequest request) {
+        Map<Long, Long> hits = new HashMap<>();
+        scan(request, (offset, timestamp, ipHigh, ipLow, uriId, appId) ->
+                hits.merge(pair(appId, uriId), 1L, Long::sum));
+        return TopViewStats.page(hits.entrySet().stream()
+                .map(entry -> toViewStats(entry.getKey(), entry.getValue())), request);
+    }
+
+    @Override
+    public List<ViewStats> getUniqueStats(ViewsStatsRequest request) {
+        Map<Long, Set<Ip>> ips = new HashMap<>();
+        scan(request, (offset, timestamp, ipHigh, ipLow, uriId, appId) ->
+                ips.computeIfAbsent(pair(appId, uriId), key -> new HashSet<>()).add(new Ip(ipHigh, ipLow)));
+        return TopViewStats.page(ips.entrySet().stream()
+                .map(entry -> toViewStats(entry.getKey(), entry.getValue().size())), request);
+    }
+
+    @Override
+    public List<ViewStatsBucket> getTimeSeries(ViewsStatsRequest request, Granularity interval) {
+        Map<BucketKey, Set<Ip>> ips = new HashMap<>();
+        Map<BucketKey, Long> hits = new HashMap<>();
+        scan(request, (offset, timestamp, ipHigh, ipLow, uriId, appId) -> {
+            BucketKey key = new BucketKey(pair(appId, uriId), interval.floorMillis(timestamp));
+            if (request.isUnique()) {
+                ips.computeIfAbsent(key, k -> new HashSet<>()).add(new Ip(ipHigh, ipLow));
+            } else {
+                hits.merge(key, 1L, Long::sum);
+            }
+        });
+        if (request.isUnique()) {
+            ips.forEach((key, set) -> hits.put(key, (long) set.size()));
+        }
+        return hits.entrySet().stream()
+                .map(entry -> toViewStatsBucket(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStatsBucket::getApp)
+                        .thenComparing(ViewStatsBucket::getUri)
+                        .thenComparing(ViewStatsBucket::getBucket))
+                .toList();
+    }
+
+    /**
+     * Id хита - его номер в логе, начиная с 1. Записи в логе идут в порядке приёма, а не по времени хита,
+     * поэтому период читается окнами по часу: хиты окна собираются и сортируются по (created, id), так что
+     * в памяти не больше одного окна.
+     */
+    @Override
+    public void exportHits(ViewsStatsRequest request, LocalDateTime afterCreated, long afterId,
+                           Consumer<EndpointHitModel> consumer) {
+        long afterMillis = toMillis(afterCreated);
+        // Хит с тем же created, что и курсор, возможен, только если курсор не дробнее миллисекунды
+        boolean sameMillisecond = afterCreated.getNano() % 1_000_000 == 0;
+        LocalDateTime windowStart = afterCreated.isAfter(request.getStart()) ? afterCreated : request.getStart();
+        while (!windowStart.isAfter(request.getEnd())) {
+            LocalDateTime next = Granularity.HOUR.next(Granularity.HOUR.floor(windowStart));
+            LocalDateTime windowEnd = next.isAfter(request.getEnd()) ? request.getEnd() : next.minusNanos(1000);
+            List<LoggedHit> window = new ArrayList<>();
+            scan(request.toBuilder().start(windowStart).end(windowEnd).build(),
+                    (offset, timestamp, ipHigh, ipLow, uriId, appId) -> {
+                        long id = offset + 1;
+                        if (timestamp > afterMillis || (sameMillisecond && timestamp == afterMillis && id > afterId)) {
+                            window.add(new LoggedHit(id, timestamp, ipHigh, ipLow, uriId, appId));
+                        }
+                    });
+            window.sort(Comparator.comparingLong(LoggedHit::timestamp).thenComparingLong(LoggedHit::id));
+            window.forEach(hit -> consumer.accept(EndpointHitModel.builder()
+                    .id(hit.id())
+                    .timestamp(toDateTime(hit.timestamp()))
+                    .app(dictionary.value(SegmentDictionary.APP, hit.appId()))
+                    .uri(dictionary.value(SegmentDictionary.URI, hit.uriId()))
+                    .ip(toIp(hit.ipHigh(), hit.ipLow()))
+                    .build()));
+            windowStart = next;
+        }
+    }
+
+    @Override
+    public void streamHitsSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        long fromMillis = toMillis(from);
+        for (Segment segment : segments) {
+            if (segment.overlaps(fromMillis, Long.MAX_VALUE)) {
+                segment.scan(fromMillis, Long.MAX_VALUE, (offset, timestamp, ipHigh, ipLow, uriId, appId) ->
+                        consumer.accept(EndpointHit.builder()
+                                .app(dictionary.value(SegmentDictionary.APP, appId))
+                                .uri(dictionary.value(SegmentDictionary.URI, uriId))
+                                .ip(toIp(ipHigh, ipLow))
+                                .timestamp(toDateTime(timestamp))
+                                .build()));
+            }
+        }
+    }
+
+    /**
+     * Обходит хиты периода запроса с подходящими app и uri; значения, которых нет в словаре, хитов не имеют.
+     */
+    private void scan(ViewsStatsRequest request, Segment.RecordVisitor visitor) {
+        int requestedAppId = 0;
+        if (request.hasApplicationCondition()) {
+            requestedAppId = dictionary.find(SegmentDictionary.APP, request.getApplication());
+            if (requestedAppId <= 0) {
+                return;
+            }
+        }
+        Set<Integer> uriIds = new HashSet<>();
+        for (String uri : request.getUris()) {
+            if (UriPatterns.isPattern(uri)) {
+                uriIds.addAll(dictionary.findMatching(SegmentDictionary.URI, UriPatterns.prefix(uri),
+                        UriPatterns.matcher(List.of(uri))));
+                continue;
+            }
+            int id = dictionary.find(SegmentDictionary.URI, uri);
+            if (id > 0) {
+                uriIds.add(id);
+            }
+        }
+        if (!request.getUris().isEmpty() && uriIds.isEmpty()) {
+            return;
+        }
+        int onlyAppId = requestedAppId;
+        Segment.RecordVisitor filtered = uriIds.isEmpty() && onlyAppId == 0 ? visitor
+                : (offset, timestamp, ipHigh, ipLow, uriId, appId) -> {
+                    if ((uriIds.isEmpty() || uriIds.contains(uriId)) && (onlyAppId == 0 || appId == onlyAppId)) {
+                        visitor.visit(offset, timestamp, ipHigh, ipLow, uriId, appId);
+                    }
+                };
+        long from = toMillis(request.getStart()) + (request.getStart().getNano() % 1_000_000 == 0 ? 0 : 1);
+        long to = toMillis(request.getEnd());
+        for (Segment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                segment.scan(from, to, filtered);
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        long baseOffset = 0;
+        if (active != null) {
+            active.seal();
+            baseOffset = active.baseOffset() + active.count();
+        }
+        active = Segment.create(directory, baseOffset, segmentRecords, indexInterval);
+        segments.add(active);
+    }
+
+    private ViewStats toViewStats(long pair, long hits) {
+        return new ViewStats(dictionary.value(SegmentDictionary.APP, (int) (pair >>> 32)),
+                dictionary.value(SegmentDictionary.URI, (int) pair), hits);
+    }
+
+    private ViewStatsBucket toViewStatsBucket(BucketKey key, long hits) {
+        return new ViewStatsBucket(dictionary.value(SegmentDictionary.APP, (int) (key.pair() >>> 32)),
+                dictionary.value(SegmentDictionary.URI, (int) key.pair()), toDateTime(key.bucket()), hits);
+    }
+
+    private static long pair(int appId, int uriId) {
+        return (long) appId << 32 | uriId & 0xffffffffL;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    /**
+     * ip как 128 бит; IPv4 хранится в виде IPv4-mapped адреса IPv6.
+     */
+    static long[] toBits(String ip) {
+        if (!IpAddresses.isValid(ip)) {
+            throw new IllegalArgumentException("Invalid ip address: " + ip);
+        }
+        try {
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            if (address.length == 4) {
+                return new long[]{0, IPV4_MAPPED_PREFIX | ByteBuffer.wrap(address).getInt() & 0xffffffffL};
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(address);
+            return new long[]{buffer.getLong(), buffer.getLong()};
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid ip address: " + ip, e);
+        }
+    }
+
+    static String toIp(long high, long low) {
+        try {
+            if (high == 0 && (low & ~0xffffffffL) == IPV4_MAPPED_PREFIX) {
+                return InetAddress.getByAddress(ByteBuffer.allocate(4).putInt((int) low).array()).getHostAddress();
+            }
+            return InetAddress.getByAddress(ByteBuffer.allocate(16).putLong(high).putLong(low).array())
+                    .getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Ip(long high, long low) {
+    }
+
+    private record BucketKey(long pair, long bucket) {
+    }
+
+    private record LoggedHit(long id, long timestamp, long ipHigh, long ipLow, int uriId, int appId) {
+    }
+}
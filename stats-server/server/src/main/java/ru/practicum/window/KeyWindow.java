@@ -0,0 +1,70 @@
+package ru.practicum.window;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+
+/**
+ * Счётчики одной пары (app, uri) внутри окна: хиты по минутам и время последнего хита каждого ip.
+ * Время - микросекунды от 1970-01-01T00:00 по локальной шкале хитов. Не потокобезопасен.
+ */
+class KeyWindow {
+    private final TreeMap<Long, MinuteSlot> minutes = new TreeMap<>();
+    private final Map<String, Long> lastSeen = new HashMap<>();
+
+    void record(long minute, long micros, String ip) {
+        minutes.computeIfAbsent(minute, m -> new MinuteSlot(micros)).add(micros);
+        lastSeen.merge(ip, micros, Math::max);
+    }
+
+    /**
+     * Число хитов в [from, to]; пусто, если граница режет минуту, в которой есть хиты по обе стороны от неё.
+     */
+    OptionalLong count(long from, long to) {
+        long hits = 0;
+        for (MinuteSlot slot : minutes.subMap(SlidingWindowCounters.minuteOf(from), true,
+                SlidingWindowCounters.minuteOf(to), true).values()) {
+            if (slot.first >= from && slot.last <= to) {
+                hits += slot.hits;
+            } else if (slot.last >= from && slot.first <= to) {
+                return OptionalLong.empty();
+            }
+        }
+        return OptionalLong.of(hits);
+    }
+
+    /**
+     * Число ip с последним хитом не раньше from. Совпадает с числом уникальных ip в [from, to],
+     * только если в окне нет хитов позже to.
+     */
+    long uniqueSince(long from) {
+        return lastSeen.values().stream().filter(micros -> micros >= from).count();
+    }
+
+    /**
+     * Удаляет данные раньше tailMinute; возвращает true, если в окне не осталось хитов.
+     */
+    boolean prune(long tailMinute, long tailMicros) {
+        minutes.headMap(tailMinute).clear();
+        lastSeen.values().removeIf(micros -> micros < tailMicros);
+        return minutes.isEmpty();
+    }
+
+    private static final class MinuteSlot {
+        private long hits;
+        private long first;
+        private long last;
+
+        private MinuteSlot(long micros) {
+            this.first = micros;
+            this.last = micros;
+        }
+
+        private void add(long micros) {
+            hits++;
+            first = Math.min(first, micros);
+            last = Math.max(last, micros);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package ru.practicum.window;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.TopViewStats;
+import ru.practicum.UriPatterns;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+import ru.practicum.model.AppUri;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Скользящее окно последних хитов в памяти: поминутные счётчики по каждой паре (app, uri) за последние
+ * {@code horizon}. Запрос /stats, период которого целиком лежит внутри окна, отвечается без обращения к БД.
+ * Пары разложены по шардам со своей блокировкой. При старте окно заполняется хитами из БД.
+ * <p>
+ * Окно видит только хиты, принятые этим экземпляром сервера.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.window.enabled", havingValue = "true")
+public class SlidingWindowCounters {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final long MICROS_PER_MINUTE = 60_000_000L;
+
+    private final StatsRepository statsRepository;
+    private final long horizonMinutes;
+    private final Map<AppUri, KeyWindow>[] shards;
+    private final AtomicLong headMinute = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong newestMicros = new AtomicLong(Long.MIN_VALUE);
+    private final Counter answeredCounter;
+    private final Counter fallbackCounter;
+
+    private volatile boolean ready;
+
+    @SuppressWarnings("unchecked")
+    public SlidingWindowCounters(StatsRepository statsRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${stats.window.horizon:PT24H}") Duration horizon,
+                                 @Value("${stats.window.shards:16}") int shards) {
+        this.statsRepository = statsRepository;
+        this.horizonMinutes = horizon.toMinutes();
+        this.shards = new Map[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new HashMap<>();
+        }
+        this.answeredCounter = Counter.builder("stats.window.answered")
+                .description("Stats requests answered from the in-memory window")
+                .register(meterRegistry);
+        this.fallbackCounter = Counter.builder("stats.window.fallback")
+                .description("Stats requests the window could not answer")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild(LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${stats.window.prune-interval:PT1M}")
+    public void prune() {
+        prune(LocalDateTime.now());
+    }
+
+    public void record(List<EndpointHit> hits) {
+        record(hits, LocalDateTime.now());
+    }
+
+    /**
+     * Статистика из окна либо пустой Optional, если период выходит за окно или граница периода
+     * делит минуту с хитами по обе стороны; тогда запрос выполняется по БД.
+     */
+    public Optional<List<ViewStats>> query(ViewsStatsRequest request) {
+        return query(request, LocalDateTime.now());
+    }
+
+    void rebuild(LocalDateTime now) {
+        long startedAt = System.nanoTime();
+        LocalDateTime from = toDateTime(tailMinute(advance(minuteOf(micros(now)))) * MICROS_PER_MINUTE);
+        try {
+            AtomicLong loaded = new AtomicLong();
+            statsRepository.streamHitsSince(from, hit -> {
+                recordOne(hit, minuteOf(micros(now)));
+                loaded.incrementAndGet();
+            });
+            ready = true;
+            log.info("Sliding window rebuilt from {} hits since {} in {} ms",
+                    loaded.get(), from, (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (DataAccessException e) {
+            log.warn("Cannot rebuild sliding window, stats are served from the database: {}", e.getMessage());
+        }
+    }
+
+    void record(List<EndpointHit> hits, LocalDateTime now) {
+        if (!ready) {
+            return;
+        }
+        long nowMinute = minuteOf(micros(now));
+        hits.forEach(hit -> recordOne(hit, nowMinute));
+    }
+
+    Optional<List<ViewStats>> query(ViewsStatsRequest request, LocalDateTime now) {
+        Optional<List<ViewStats>> result = ready ? compute(request, minuteOf(micros(now))) : Optional.empty();
+        (result.isPresent() ? answeredCounter : fallbackCounter).increment();
+        return result;
+    }
+
+    void prune(LocalDateTime now) {
+        long tail = tailMinute(advance(minuteOf(micros(now))));
+        for (Map<AppUri, KeyWindow> shard : shards) {
+            synchronized (shard) {
+                shard.values().removeIf(window -> window.prune(tail, tail * MICROS_PER_MINUTE));
+            }
+        }
+    }
+
+    private void recordOne(EndpointHit hit, long nowMinute) {
+        long micros = micros(hit.getTimestamp());
+        long minute = minuteOf(micros);
+        long head = headMinute.accumulateAndGet(Math.max(minute, nowMinute), Math::max);
+        if (minute < tailMinute(head)) {
+            return;
+        }
+        newestMicros.accumulateAndGet(micros, Math::max);
+        AppUri key = new AppUri(hit.getApp(), hit.getUri());
+        Map<AppUri, KeyWindow> shard = shardOf(key);
+        synchronized (shard) {
+            shard.computeIfAbsent(key, k -> new KeyWindow()).record(minute, micros, hit.getIp());
+        }
+    }
+
+    private Optional<List<ViewStats>> compute(ViewsStatsRequest request, long nowMinute) {
+        long from = micros(request.getStart());
+        long to = micros(request.getEnd());
+        if (from < tailMinute(advance(nowMinute)) * MICROS_PER_MINUTE) {
+            return Optional.empty();
+        }
+        if (request.isUnique() && to < newestMicros.get()) {
+            return Optional.empty();
+        }
+        Predicate<String> uris = UriPatterns.matcher(request.getUris());
+        Predicate<String> apps = request.hasApplicationCondition() ? request.getApplication()::equals : app -> true;
+        List<ViewStats> stats = new ArrayList<>();
+        for (Map<AppUri, KeyWindow> shard : shards) {
+            synchronized (shard) {
+                for (Map.Entry<AppUri, KeyWindow> entry : shard.entrySet()) {
+                    if (!uris.test(entry.getKey().uri()) || !apps.test(entry.getKey().app())) {
+                        continue;
+                    }
+                    OptionalLong hits = request.isUnique()
+                            ? OptionalLong.of(entry.getValue().uniqueSince(from))
+                            : entry.getValue().count(from, to);
+                    if (hits.isEmpty()) {
+                        return Optional.empty();
+                    }
+                    if (hits.getAsLong() > 0) {
+                        stats.add(new ViewStats(entry.getKey().app(), entry.getKey().uri(), hits.getAsLong()));
+                    }
+                }
+            }
+        }
+        return Optional.of(TopViewStats.page(stats.stream(), request));
+    }
+
+    private long advance(long nowMinute) {
+        return headMinute.accumulateAndGet(nowMinute, Math::max);
+    }
+
+    private long tailMinute(long head) {
+        return head - horizonMinutes + 1;
+    }
+
+    private Map<AppUri, KeyWindow> shardOf(AppUri key) {
+        return shards[Math.floorMod(key.hashCode(), shards.length)];
+    }
+
+    static long minuteOf(long micros) {
+        return Math.floorDiv(micros, MICROS_PER_MINUTE);
+    }
+
+    private static long micros(LocalDateTime dateTime) {
+        return ChronoUnit.MICROS.between(EPOCH, dateTime);
+    }
+
+    private static LocalDateTime toDateTime(long micros) {
+        return EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
@@ -1,10 +1,84 @@
 DROP TABLE IF EXISTS STATS CASCADE;
+DROP TABLE IF EXISTS STATS_ROLLUP CASCADE;
+DROP TABLE IF EXISTS STATS_HLL CASCADE;
+DROP TABLE IF EXISTS STATS_APP CASCADE;
+DROP TABLE IF EXISTS STATS_URI CASCADE;
+DROP TABLE IF EXISTS STATS_IP CASCADE;
+DROP TABLE IF EXISTS STATS_UNIQUE_DAY CASCADE;
+DROP TABLE IF EXISTS STATS_WATERMARK CASCADE;
 
+CREATE TABLE IF NOT EXISTS STATS_APP
+(
+    id   SMALLINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+    );
+
+CREATE TABLE IF NOT EXISTS STATS_URI
+(
+    id  INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(255) NOT NULL UNIQUE
+    );
+
+-- Колонки фиксированной длины идут по убыванию выравнивания, чтобы в строке не было пустых байтов
 CREATE TABLE IF NOT EXISTS STATS
 (
-    id      BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY UNIQUE,
-    app     VARCHAR(255) NOT NULL,
-    uri     VARCHAR(255) NOT NULL,
-    ip      VARCHAR(255) NOT NULL,
-    created TIMESTAMP WITHOUT TIME ZONE
-    );
\ No newline at end of file
+    id      BIGINT GENERATED ALWAYS AS IDENTITY,
+    created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    uri_id  INTEGER                     NOT NULL,
+    app_id  SMALLINT                    NOT NULL,
+    ip      INET                        NOT NULL,
+    PRIMARY KEY (id, created)
+    ) PARTITION BY RANGE (created);
+
+CREATE TABLE IF NOT EXISTS STATS_DEFAULT PARTITION OF STATS DEFAULT;
+
+CREATE TABLE IF NOT EXISTS STATS_ROLLUP
+(
+    granularity VARCHAR(6)                  NOT NULL,
+    bucket      TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id      SMALLINT                    NOT NULL,
+    uri_id      INTEGER                     NOT NULL,
+    hits        BIGINT                      NOT NULL,
+    PRIMARY KEY (granularity, bucket, app_id, uri_id)
+    );
+
+CREATE TABLE IF NOT EXISTS STATS_HLL
+(
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id SMALLINT                    NOT NULL,
+    uri_id INTEGER                     NOT NULL,
+    sketch BYTEA                       NOT NULL,
+    PRIMARY KEY (bucket, app_id, uri_id)
+    );
+
+-- Плотные id ip для битовых карт STATS_UNIQUE_DAY
+CREATE TABLE IF NOT EXISTS STATS_IP
+(
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    ip INET NOT NULL UNIQUE
+    );
+
+CREATE TABLE IF NOT EXISTS STATS_UNIQUE_DAY
+(
+    day    DATE     NOT NULL,
+    app_id SMALLINT NOT NULL,
+    uri_id INTEGER  NOT NULL,
+    bitmap BYTEA    NOT NULL,
+    PRIMARY KEY (day, app_id, uri_id)
+    );
+
+-- Границы фоновых задач: compaction - до неё сырые хиты и минутные агрегаты удалены;
+-- bitmap - с неё суточные битовые карты STATS_UNIQUE_DAY содержат все хиты
+CREATE TABLE IF NOT EXISTS STATS_WATERMARK
+(
+    name  VARCHAR(64)                 NOT NULL PRIMARY KEY,
+    value TIMESTAMP WITHOUT TIME ZONE NOT NULL
+    );
+
+-- Шаблоны uri в /stats (LIKE '/events/%') ищутся по префиксу независимо от правил сортировки базы
+CREATE INDEX IF NOT EXISTS stats_uri_pattern_idx ON STATS_URI (uri text_pattern_ops);
+-- id во втором столбце позволяет продолжать выгрузку /stats/export по ключу (created, id) без сортировки
+CREATE INDEX IF NOT EXISTS stats_created_idx ON STATS (created, id);
+CREATE INDEX IF NOT EXISTS stats_uri_created_idx ON STATS (uri_id, created);
+-- Запросы с фильтром по app читают только строки своего app, сколько бы хитов ни было у остальных
+CREATE INDEX IF NOT EXISTS stats_app_created_idx ON STATS (app_id, created);
@@ -0,0 +1,43 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+    private static final int KEYS = 30_000;
+
+    @Test
+    void nodeFor_ShouldSpreadKeysEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("http://a:9090", "http://b:9090", "http://c:9090"));
+
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.nodeFor("/events/" + i), 1, Integer::sum);
+        }
+
+        assertEquals(3, owned.size());
+        owned.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 / 5, "owned " + owned));
+    }
+
+    @Test
+    void nodeFor_ShouldMoveKeysOnlyToAddedNode() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("http://a:9090", "http://b:9090"));
+        ConsistentHashRing after = new ConsistentHashRing(List.of("http://a:9090", "http://b:9090", "http://c:9090"));
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "/events/" + i;
+            if (!before.nodeFor(key).equals(after.nodeFor(key))) {
+                assertEquals("http://c:9090", after.nodeFor(key));
+                moved++;
+            }
+        }
+
+        assertTrue(moved > KEYS / 4 && moved < KEYS / 2, "moved " + moved);
+    }
+}
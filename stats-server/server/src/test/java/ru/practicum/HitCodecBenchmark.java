@@ -0,0 +1,77 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ручной бенчмарк кодирования и разбора пачки хитов: JSON через Jackson против {@link EndpointHitFrame}.
+ * Печатает размер и стоимость кодирования и разбора одного хита. Не запускается в составе {@code mvn test}.
+ * <p>
+ * Запуск: {@code mvn test -pl stats-server/server -am -Dtest=HitCodecBenchmark -Dsurefire.failIfNoSpecifiedTests=false}
+ */
+class HitCodecBenchmark {
+    private static final int BATCH = 1000;
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int ROUNDS = 2000;
+    private static final TypeReference<List<EndpointHit>> HIT_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper json = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void jsonVersusFrame() throws IOException {
+        List<EndpointHit> hits = new ArrayList<>(BATCH);
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < BATCH; i++) {
+            hits.add(EndpointHit.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + i)
+                    .ip("192.168." + i % 256 + "." + i / 256)
+                    .timestamp(timestamp.plusSeconds(i))
+                    .build());
+        }
+
+        byte[] jsonBody = json.writeValueAsBytes(hits);
+        byte[] frameBody = frame(hits);
+        measure("json", jsonBody.length, () -> json.writeValueAsBytes(hits), () -> json.readValue(jsonBody, HIT_LIST));
+        measure("frame", frameBody.length, () -> frame(hits),
+                () -> EndpointHitFrame.read(new ByteArrayInputStream(frameBody), frameBody.length));
+    }
+
+    private void measure(String format, int bytes, Codec encode, Codec decode) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            encode.run();
+            decode.run();
+        }
+        System.out.printf("%-6s %5.1f B/hit   encode %6.0f ns/hit   decode %6.0f ns/hit%n",
+                format, (double) bytes / BATCH, nanosPerHit(encode), nanosPerHit(decode));
+    }
+
+    private double nanosPerHit(Codec codec) throws IOException {
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            codec.run();
+        }
+        return (double) (System.nanoTime() - startedAt) / ROUNDS / BATCH;
+    }
+
+    private static byte[] frame(List<EndpointHit> hits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * hits.size());
+        EndpointHitFrame.write(hits, out);
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Codec {
+        Object run() throws IOException;
+    }
+}
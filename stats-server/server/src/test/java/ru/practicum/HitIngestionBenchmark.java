@@ -0,0 +1,100 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dictionary.StatsDictionary;
+import ru.practicum.hll.HllSketchRepository;
+import ru.practicum.rollup.RollupQueryPlanner;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ручной бенчмарк пропускной способности записи хитов. Не запускается в составе {@code mvn test}.
+ * <p>
+ * Запуск: {@code mvn test -pl stats-server/server -Dtest=HitIngestionBenchmark -Dsurefire.failIfNoSpecifiedTests=false}
+ * <p>
+ * По умолчанию используется база из docker-compose ({@code stats-db}), другая база задаётся
+ * свойствами {@code stats.benchmark.url}, {@code stats.benchmark.username}, {@code stats.benchmark.password},
+ * например {@code -Dstats.benchmark.url=jdbc:postgresql://localhost:5434/postgres?reWriteBatchedInserts=true}.
+ * Без {@code reWriteBatchedInserts} драйвер не склеивает пачку в многострочные INSERT.
+ */
+class HitIngestionBenchmark {
+    private static final int TOTAL_HITS = 20_000;
+    private static final int[] BATCH_SIZES = {1, 100, 10_000};
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private StatsRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("stats.benchmark.url",
+                        "jdbc:postgresql://localhost:5434/ewm-stats?reWriteBatchedInserts=true"),
+                System.getProperty("stats.benchmark.username", "root"),
+                System.getProperty("stats.benchmark.password", "root"));
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        HllSketchRepository hllSketchRepository = new HllSketchRepository(jdbcTemplate);
+        ReflectionTestUtils.setField(hllSketchRepository, "precision", 12);
+        repository = new StatsRepositoryImpl(jdbcTemplate, new ViewStatsMapper(), new RollupQueryPlanner(),
+                hllSketchRepository, new StatsDictionary(jdbcTemplate, 100_000));
+        ReflectionTestUtils.setField(repository, "batchSize", 1000);
+    }
+
+    @Test
+    void ingestionThroughput() {
+        List<EndpointHit> hits = generateHits(TOTAL_HITS);
+
+        long singleNanos = measure(() -> hits.forEach(repository::saveHit));
+        report("saveHit", 1, singleNanos);
+
+        for (int batchSize : BATCH_SIZES) {
+            long nanos = measure(() -> {
+                for (int from = 0; from < hits.size(); from += batchSize) {
+                    List<EndpointHit> batch = hits.subList(from, Math.min(from + batchSize, hits.size()));
+                    transactionTemplate.executeWithoutResult(status -> repository.saveHits(batch));
+                }
+            });
+            report("saveHits", batchSize, nanos);
+        }
+        System.out.printf("stats row %.1f bytes%n",
+                jdbcTemplate.queryForObject("SELECT AVG(pg_column_size(s.*)) FROM stats s", Double.class));
+    }
+
+    private long measure(Runnable action) {
+        jdbcTemplate.update("DELETE FROM stats");
+        long startedAt = System.nanoTime();
+        action.run();
+        return System.nanoTime() - startedAt;
+    }
+
+    private void report(String method, int batchSize, long nanos) {
+        System.out.printf("%-8s batch=%-6d %10.0f hits/sec%n", method, batchSize, TOTAL_HITS * 1e9 / nanos);
+    }
+
+    private List<EndpointHit> generateHits(int count) {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<EndpointHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(EndpointHit.builder()
+                    .app("ewm-main-service")
+                    .uri("/events/" + (i % 500))
+                    .ip("10.0." + (i % 250) + "." + (i % 199))
+                    .timestamp(now.minusSeconds(i))
+                    .build());
+        }
+        return hits;
+    }
+}
@@ -6,10 +6,13 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -27,7 +30,6 @@ class StatsClientTest {
     @Mock
     private HttpClient httpClient;
 
-    @InjectMocks
     private StatsClient statsClient;
 
     @BeforeEach
@@ -62,6 +64,50 @@ class StatsClientTest {
         verify(objectMapper, times(1)).writeValueAsString(any(EndpointHit.class));
     }
 
+    @Test
+    void postStats_ShouldSendFrame_WhenBinaryHitsEnabled() throws Exception {
+        ReflectionTestUtils.setField(statsClient, "binaryHits", true);
+        EndpointHit hit = EndpointHit.builder()
+                .app("testApp")
+                .uri("/test")
+                .ip("127.0.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        statsClient.postStats(List.of(hit, hit));
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).send(captor.capture(), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any());
+        assertTrue(captor.getValue().uri().toString().endsWith("/hit/batch"));
+        assertEquals(EndpointHitFrame.MEDIA_TYPE, captor.getValue().headers().firstValue("Content-Type").orElseThrow());
+        verifyNoInteractions(objectMapper);
+    }
+
+    @Test
+    void postStats_ShouldRetryWithSameHitId_WhenTimedOut() throws Exception {
+        ReflectionTestUtils.setField(statsClient, "hitRetries", 1);
+        EndpointHit hit = EndpointHit.builder()
+                .app("testApp")
+                .uri("/test")
+                .ip("127.0.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+        @SuppressWarnings("unchecked")
+        HttpResponse<Void> created = (HttpResponse<Void>) mock(HttpResponse.class);
+        when(created.statusCode()).thenReturn(201);
+        when(objectMapper.writeValueAsString(any(EndpointHit.class))).thenReturn("{}");
+        when(httpClient.send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any()))
+                .thenThrow(new HttpTimeoutException("request timed out"))
+                .thenReturn(created);
+
+        statsClient.postStats(hit);
+
+        ArgumentCaptor<EndpointHit> sent = ArgumentCaptor.forClass(EndpointHit.class);
+        verify(httpClient, times(2)).send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any());
+        verify(objectMapper).writeValueAsString(sent.capture());
+        assertNotNull(sent.getValue().getHitId());
+    }
+
     @Test
     void getStats_ShouldReturnList() throws Exception {
         ViewsStatsRequest request = ViewsStatsRequest.builder()
@@ -109,4 +155,89 @@ class StatsClientTest {
         assertNotNull(stats);
         assertTrue(stats.isEmpty());
     }
+
+    @Test
+    void getStats_ShouldMergePages_FromAllShards() throws Exception {
+        StatsClient sharded = new StatsClient("testApp", "http://a:9090, http://b:9090", objectMapper);
+        ReflectionTestUtils.setField(sharded, "httpClient", httpClient);
+        HttpResponse<String> fromA = stringResponse("a");
+        HttpResponse<String> fromB = stringResponse("b");
+        when(httpClient.send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<String>>any()))
+                .thenAnswer(invocation -> invocation.<HttpRequest>getArgument(0).uri().getHost().equals("a") ? fromA : fromB);
+        when(objectMapper.readValue(eq("a"), any(TypeReference.class)))
+                .thenReturn(List.of(new ViewStats("app", "/a1", 5L), new ViewStats("app", "/a2", 1L)));
+        when(objectMapper.readValue(eq("b"), any(TypeReference.class)))
+                .thenReturn(List.of(new ViewStats("app", "/b1", 3L)));
+
+        List<ViewStats> stats = sharded.getStats(ViewsStatsRequest.builder()
+                .uris(Collections.emptyList())
+                .limit(2)
+                .offset(1)
+                .build());
+
+        assertEquals(List.of("/b1", "/a2"), stats.stream().map(ViewStats::getUri).toList());
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, times(2)).send(captor.capture(), ArgumentMatchers.<HttpResponse.BodyHandler<String>>any());
+        captor.getAllValues().forEach(sent -> {
+            assertTrue(sent.uri().getQuery().contains("limit=3"));
+            assertFalse(sent.uri().getQuery().contains("offset"));
+        });
+    }
+
+    @Test
+    void getStats_ShouldOrderMergedTies_AsServer() throws Exception {
+        StatsClient sharded = new StatsClient("testApp", "http://a:9090,http://b:9090", objectMapper);
+        ReflectionTestUtils.setField(sharded, "httpClient", httpClient);
+        HttpResponse<String> fromA = stringResponse("a");
+        HttpResponse<String> fromB = stringResponse("b");
+        when(httpClient.send(any(HttpRequest.class), ArgumentMatchers.<HttpResponse.BodyHandler<String>>any()))
+                .thenAnswer(invocation -> invocation.<HttpRequest>getArgument(0).uri().getHost().equals("a") ? fromA : fromB);
+        when(objectMapper.readValue(eq("a"), any(TypeReference.class)))
+                .thenReturn(List.of(new ViewStats("app", "/events/\uD83D\uDE00", 2L), new ViewStats("app", "/events/b", 2L)));
+        when(objectMapper.readValue(eq("b"), any(TypeReference.class)))
+                .thenReturn(List.of(new ViewStats("app", "/events/B", 2L), new ViewStats("app", "/events/\uFF21", 2L)));
+
+        List<ViewStats> stats = sharded.getStats(ViewsStatsRequest.builder()
+                .uris(Collections.emptyList())
+                .build());
+
+        assertEquals(List.of("/events/B", "/events/b", "/events/\uFF21", "/events/\uD83D\uDE00"),
+                stats.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void postStats_ShouldSendEachHitToItsShard() throws Exception {
+        StatsClient sharded = new StatsClient("testApp", "http://a:9090,http://b:9090", objectMapper);
+        ReflectionTestUtils.setField(sharded, "httpClient", httpClient);
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("http://a:9090", "http://b:9090"));
+        when(objectMapper.writeValueAsString(any())).thenReturn("[]");
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            hits.add(EndpointHit.builder()
+                    .app("testApp")
+                    .uri("/events/" + i)
+                    .ip("127.0.0.1")
+                    .timestamp(LocalDateTime.now())
+                    .build());
+        }
+
+        sharded.postStats(hits);
+
+        ArgumentCaptor<List<EndpointHit>> batches = ArgumentCaptor.captor();
+        verify(objectMapper, times(2)).writeValueAsString(batches.capture());
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, times(2)).send(captor.capture(), ArgumentMatchers.<HttpResponse.BodyHandler<Void>>any());
+        for (int i = 0; i < 2; i++) {
+            String node = "http://" + captor.getAllValues().get(i).uri().getAuthority();
+            batches.getAllValues().get(i).forEach(hit -> assertEquals(node, ring.nodeFor(hit.getUri())));
+        }
+    }
+
+    private static HttpResponse<String> stringResponse(String body) {
+        @SuppressWarnings("unchecked")
+        HttpResponse<String> response = (HttpResponse<String>) mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.body()).thenReturn(body);
+        return response;
+    }
 }
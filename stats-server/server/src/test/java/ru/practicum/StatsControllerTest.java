@@ -1,15 +1,22 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.practicum.exception.ErrorHandler;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -20,6 +27,9 @@ class StatsControllerTest {
     @Mock
     private StatsService statsService;
 
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private StatsController statsController;
 
@@ -42,6 +52,53 @@ class StatsControllerTest {
         verify(statsService, times(1)).saveHit(any());
     }
 
+    @Test
+    void hitBatch_ShouldReturnCreated() throws Exception {
+        String json = "[{\"app\":\"app\",\"uri\":\"/uri\",\"ip\":\"127.0.0.1\",\"timestamp\":\"2025-07-02 10:00:00\"}," +
+                "{\"app\":\"app\",\"uri\":\"/uri/1\",\"ip\":\"127.0.0.2\",\"timestamp\":\"2025-07-02 10:00:01\"}]";
+
+        mockMvc.perform(post("/hit/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isCreated());
+
+        verify(statsService, times(1)).saveHits(argThat(hits -> hits.size() == 2));
+    }
+
+    @Test
+    void hitBatch_ShouldStoreIpv6InOneForm() throws Exception {
+        String json = "[{\"app\":\"app\",\"uri\":\"/uri\",\"ip\":\"::1\",\"timestamp\":\"2025-07-02 10:00:00\"}," +
+                "{\"app\":\"app\",\"uri\":\"/uri\",\"ip\":\"0:0:0:0:0:0:0:1\",\"timestamp\":\"2025-07-02 10:00:01\"}]";
+
+        mockMvc.perform(post("/hit/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isCreated());
+
+        verify(statsService).saveHits(argThat(hits -> hits.get(0).getIp().equals(hits.get(1).getIp())));
+    }
+
+    @Test
+    void hitBatch_ShouldRejectHitWithoutAppOrTimestamp() throws Exception {
+        String withoutApp = "[{\"app\":\"app\",\"uri\":\"/uri\",\"ip\":\"127.0.0.1\",\"timestamp\":\"2025-07-02 10:00:00\"}," +
+                "{\"uri\":\"/uri/1\",\"ip\":\"127.0.0.2\",\"timestamp\":\"2025-07-02 10:00:01\"}]";
+        String withoutTimestamp = "[{\"app\":\"app\",\"uri\":\"/uri\",\"ip\":\"127.0.0.1\"}]";
+        MockMvc validating = MockMvcBuilders.standaloneSetup(statsController)
+                .setControllerAdvice(new ErrorHandler())
+                .build();
+
+        validating.perform(post("/hit/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(withoutApp))
+                .andExpect(status().isBadRequest());
+        validating.perform(post("/hit/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(withoutTimestamp))
+                .andExpect(status().isBadRequest());
+
+        verify(statsService, never()).saveHits(any());
+    }
+
     @Test
     void getStats_ShouldReturnOk() throws Exception {
         LocalDateTime start = LocalDateTime.now().minusDays(1);
@@ -57,4 +114,111 @@ class StatsControllerTest {
 
         verify(statsService, times(1)).getViewStatsList(any());
     }
+
+    @Test
+    void streamStats_ShouldWriteJsonArray() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<ViewStats> consumer = invocation.getArgument(1);
+            consumer.accept(new ViewStats("app", "/uri/1", 5L));
+            consumer.accept(new ViewStats("app", "/uri/2", 3L));
+            return null;
+        }).when(statsService).streamViewStats(any(), any());
+
+        mockMvc.perform(get("/stats")
+                        .param("start", "2025-07-01 00:00:00")
+                        .param("end", "2025-07-02 00:00:00")
+                        .param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"app\":\"app\",\"uri\":\"/uri/1\",\"hits\":5}," +
+                        "{\"app\":\"app\",\"uri\":\"/uri/2\",\"hits\":3}]", true));
+
+        verify(statsService, never()).getViewStatsList(any());
+    }
+
+    @Test
+    void export_ShouldWriteRawHitsAsCsv_FromCursor() throws Exception {
+        LocalDateTime after = LocalDateTime.of(2025, 7, 1, 10, 0, 0, 250_000_000);
+        doAnswer(invocation -> {
+            Consumer<EndpointHitModel> consumer = invocation.getArgument(3);
+            consumer.accept(new EndpointHitModel(8L, "app", "/uri?a=1,b=\"2\"", "10.0.0.1", after));
+            consumer.accept(new EndpointHitModel(9L, "app", "/uri/2", "10.0.0.2", after.plusSeconds(1)));
+            return null;
+        }).when(statsService).exportHits(any(), eq(after), eq(7L), any());
+
+        mockMvc.perform(get("/stats/export")
+                        .param("start", "2025-07-01 00:00:00")
+                        .param("end", "2025-07-02 00:00:00")
+                        .param("after", "2025-07-01T10:00:00.25")
+                        .param("afterId", "7"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string("created,id,app,uri,ip\r\n" +
+                        "2025-07-01T10:00:00.25,8,app,\"/uri?a=1,b=\"\"2\"\"\",10.0.0.1\r\n" +
+                        "2025-07-01T10:00:01.25,9,app,/uri/2,10.0.0.2\r\n"));
+    }
+
+    @Test
+    void export_ShouldResumeTimeSeriesAfterLastBucket() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<ViewStatsBucket> consumer = invocation.getArgument(2);
+            consumer.accept(new ViewStatsBucket("app", "/uri/1", LocalDateTime.of(2025, 7, 1, 11, 0), 4L));
+            return null;
+        }).when(statsService).exportTimeSeries(any(), eq(Granularity.HOUR), any());
+
+        mockMvc.perform(get("/stats/export")
+                        .param("start", "2025-07-01 00:00:00")
+                        .param("end", "2025-07-02 00:00:00")
+                        .param("interval", "hour")
+                        .param("after", "2025-07-01T10:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("bucket,app,uri,hits\r\n2025-07-01T11:00:00,app,/uri/1,4\r\n"));
+
+        verify(statsService).exportTimeSeries(
+                argThat(request -> request.getStart().equals(LocalDateTime.of(2025, 7, 1, 11, 0))),
+                eq(Granularity.HOUR), any());
+    }
+
+    @Test
+    void getStats_ShouldPassLimitAndOffset() throws Exception {
+        when(statsService.getViewStatsList(any())).thenReturn(List.of());
+
+        mockMvc.perform(get("/stats")
+                        .param("start", "2025-07-01 00:00:00")
+                        .param("end", "2025-07-02 00:00:00")
+                        .param("limit", "10")
+                        .param("offset", "20"))
+                .andExpect(status().isOk());
+
+        verify(statsService).getViewStatsList(argThat(request -> request.getLimit() == 10 && request.getOffset() == 20));
+    }
+
+    @Test
+    void getStats_ShouldPassApplication() throws Exception {
+        when(statsService.getViewStatsList(any())).thenReturn(List.of());
+
+        mockMvc.perform(get("/stats")
+                        .param("start", "2025-07-01 00:00:00")
+                        .param("end", "2025-07-02 00:00:00")
+                        .param("application", "ewm-main-service"))
+                .andExpect(status().isOk());
+
+        verify(statsService).getViewStatsList(argThat(request -> "ewm-main-service".equals(request.getApplication())));
+    }
+
+    @Test
+    void getTimeSeries_ShouldPassInterval() throws Exception {
+        ReflectionTestUtils.setField(statsController, "maxTimeSeriesBuckets", 100);
+        when(statsService.getTimeSeries(any(), any())).thenReturn(List.of(
+                new ViewStatsBucket("app", "/uri/1", LocalDateTime.of(2025, 7, 1, 10, 0), 3L)));
+
+        mockMvc.perform(get("/stats/timeseries")
+                        .param("start", "2025-07-01 00:00:00")
+                        .param("end", "2025-07-02 00:00:00")
+                        .param("interval", "hour"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"app\":\"app\",\"uri\":\"/uri/1\"," +
+                        "\"bucket\":\"2025-07-01 10:00:00\",\"hits\":3}]", true));
+
+        verify(statsService).getTimeSeries(any(), eq(Granularity.HOUR));
+    }
 }
@@ -0,0 +1,189 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import ru.practicum.compaction.CompactionWatermark;
+import ru.practicum.compaction.HitCompactor;
+import ru.practicum.dictionary.StatsDictionary;
+import ru.practicum.hll.HllSketchRepository;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+import ru.practicum.rollup.RollupQueryPlanner;
+
+import java.security.InvalidParameterException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Запросы репозитория на настоящем Postgres: объединение сырых краёв с агрегатами, уникальные по скетчам
+ * и точно, страницы с равными hits и период до границы сжатия. База поднимается в контейнере, без Docker
+ * тест пропускается; уже запущенная база задаётся свойствами {@code stats.test.url}, {@code stats.test.username},
+ * {@code stats.test.password}. Схема пересоздаётся перед каждым тестом.
+ */
+class StatsRepositoryImplTest {
+    private static PostgreSQLContainer<?> postgres;
+    private static DriverManagerDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+    private StatsRepositoryImpl repository;
+    private CompactionWatermark watermark;
+
+    @BeforeAll
+    static void startDatabase() {
+        String url = System.getProperty("stats.test.url");
+        if (url != null) {
+            dataSource = new DriverManagerDataSource(url, System.getProperty("stats.test.username", "postgres"),
+                    System.getProperty("stats.test.password", "postgres"));
+            return;
+        }
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        postgres = new PostgreSQLContainer<>("postgres:14-alpine");
+        postgres.start();
+        dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        HllSketchRepository hllSketchRepository = new HllSketchRepository(jdbcTemplate);
+        ReflectionTestUtils.setField(hllSketchRepository, "precision", 12);
+        ReflectionTestUtils.setField(hllSketchRepository, "fetchSize", 100);
+        repository = new StatsRepositoryImpl(jdbcTemplate, new ViewStatsMapper(), new RollupQueryPlanner(),
+                hllSketchRepository, new StatsDictionary(jdbcTemplate, 1000));
+        watermark = new CompactionWatermark(jdbcTemplate);
+        ReflectionTestUtils.setField(repository, "compactionWatermark", watermark);
+        ReflectionTestUtils.setField(repository, "batchSize", 100);
+        ReflectionTestUtils.setField(repository, "fetchSize", 100);
+
+        repository.saveHits(List.of(
+                hit("a", "/events/1", "10.0.0.1", "2025-01-01T10:00:00"),
+                hit("a", "/events/1", "10.0.0.2", "2025-01-02T10:00:00"),
+                hit("a", "/events/1", "10.0.0.1", "2025-01-02T11:30:00"),
+                hit("a", "/events/2", "10.0.0.1", "2025-01-03T10:30:15"),
+                hit("a", "/events/2", "10.0.0.3", "2025-01-03T10:30:15"),
+                hit("b", "/events/1", "10.0.0.1", "2025-01-05T10:00:00")));
+    }
+
+    @Test
+    void getStats_ShouldAddRawEdgesToRollups() {
+        assertEquals(List.of("a /events/1 2", "a /events/2 2"),
+                rows(repository.getStats(request("2025-01-01T10:00:01", "2025-01-03T10:30:15").build())));
+        assertEquals(List.of("a /events/1 3", "a /events/2 2", "b /events/1 1"),
+                rows(repository.getStats(request("2024-12-31T23:59:59", "2025-01-06T00:00:00").build())));
+        assertEquals(List.of("a /events/1 1"),
+                rows(repository.getStats(request("2025-01-02T10:00:00", "2025-01-02T11:29:59").build())));
+    }
+
+    @Test
+    void getUniqueStats_ShouldMatch_BySketchesAndExactly() {
+        ViewsStatsRequest.ViewsStatsRequestBuilder period = request("2025-01-01T09:15:00", "2025-01-05T10:00:00")
+                .unique(true);
+
+        List<String> expected = List.of("a /events/1 2", "a /events/2 2", "b /events/1 1");
+        assertEquals(expected, rows(repository.getUniqueStats(period.build())));
+        assertEquals(expected, rows(repository.getUniqueStats(period.exact(true).build())));
+        assertEquals(List.of("a /events/2 2"), rows(repository.getUniqueStats(
+                request("2025-01-03T10:30:00", "2025-01-03T10:31:00").unique(true).build())));
+    }
+
+    @Test
+    void getStats_ShouldBreakHitTiesByCodePoint_AcrossPages() {
+        for (String uri : List.of("/events/Ａ", "/events/b-c", "/events/a", "/events/B")) {
+            repository.saveHits(List.of(hit("c", uri, "10.0.0.1", "2025-01-04T12:00:00"),
+                    hit("c", uri, "10.0.0.2", "2025-01-04T12:00:00")));
+        }
+        ViewsStatsRequest.ViewsStatsRequestBuilder period = request("2025-01-04T00:00:00", "2025-01-04T23:59:59")
+                .application("c")
+                .limit(2);
+
+        List<String> pages = new ArrayList<>();
+        pages.addAll(rows(repository.getStats(period.offset(0).build())));
+        pages.addAll(rows(repository.getStats(period.offset(2).build())));
+        pages.addAll(rows(repository.getUniqueStats(period.unique(true).offset(1).build())));
+
+        assertEquals(List.of("c /events/B 2", "c /events/a 2", "c /events/b-c 2", "c /events/Ａ 2",
+                "c /events/a 2", "c /events/b-c 2"), pages);
+    }
+
+    @Test
+    void compactedPeriod_ShouldBeAnsweredFromRollupsAndSketches_OrRejected() {
+        HitCompactor compactor = new HitCompactor(jdbcTemplate, watermark);
+        // Граница сжатия - начало суток now - age, то есть 2025-01-03
+        ReflectionTestUtils.setField(compactor, "age",
+                Duration.between(LocalDateTime.parse("2025-01-03T12:00:00"), LocalDateTime.now()));
+        ReflectionTestUtils.setField(compactor, "batchSize", 1);
+
+        compactor.compact();
+
+        assertEquals(LocalDateTime.parse("2025-01-03T00:00:00"), watermark.get().orElseThrow());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stats", Integer.class));
+        String start = "2025-01-01T00:00:00";
+        String end = "2025-01-05T23:59:59";
+        assertEquals(List.of("a /events/1 3", "a /events/2 2", "b /events/1 1"),
+                rows(repository.getStats(request(start, end).build())));
+        assertEquals(List.of("a /events/1 2", "a /events/2 2", "b /events/1 1"),
+                rows(repository.getUniqueStats(request(start, end).unique(true).build())));
+        assertEquals(List.of("a /events/1 2025-01-01T00:00 1", "a /events/1 2025-01-02T00:00 2",
+                        "a /events/2 2025-01-03T00:00 2", "b /events/1 2025-01-05T00:00 1"),
+                repository.getTimeSeries(request(start, end).unique(true).build(), Granularity.DAY).stream()
+                        .map(b -> b.getApp() + " " + b.getUri() + " " + b.getBucket() + " " + b.getHits())
+                        .toList());
+
+        assertThrows(InvalidParameterException.class,
+                () -> repository.getStats(request("2025-01-01T00:00:01", end).build()));
+        assertThrows(InvalidParameterException.class,
+                () -> repository.getUniqueStats(request(start, end).unique(true).exact(true).build()));
+        assertThrows(InvalidParameterException.class,
+                () -> repository.getTimeSeries(request(start, end).build(), Granularity.MINUTE));
+        List<EndpointHitModel> exported = new ArrayList<>();
+        assertThrows(InvalidParameterException.class, () -> repository.exportHits(request(start, end).build(),
+                LocalDateTime.parse(start), 0, exported::add));
+        repository.exportHits(request(start, end).build(), LocalDateTime.parse("2025-01-03T00:00:00"), 0,
+                exported::add);
+        assertEquals(3, exported.size());
+    }
+
+    private static ViewsStatsRequest.ViewsStatsRequestBuilder request(String start, String end) {
+        return ViewsStatsRequest.builder()
+                .start(LocalDateTime.parse(start))
+                .end(LocalDateTime.parse(end))
+                .uris(List.of());
+    }
+
+    private static EndpointHit hit(String app, String uri, String ip, String timestamp) {
+        return EndpointHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(LocalDateTime.parse(timestamp))
+                .build();
+    }
+
+    private static List<String> rows(List<ViewStats> stats) {
+        return stats.stream()
+                .map(viewStats -> viewStats.getApp() + " " + viewStats.getUri() + " " + viewStats.getHits())
+                .toList();
+    }
+}
@@ -1,12 +1,20 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.buffer.FlushListener;
+import ru.practicum.buffer.WriteBehindHitBuffer;
+import ru.practicum.dedup.HitDeduplicator;
+import ru.practicum.window.SlidingWindowCounters;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -37,6 +45,50 @@ class StatsServiceImplTest {
         verify(statRepository, times(1)).saveHit(hit);
     }
 
+    @Test
+    void saveHits_ShouldCallRepository() {
+        List<EndpointHit> hits = List.of(EndpointHit.builder()
+                .app("testApp")
+                .ip("127.0.0.1")
+                .uri("/test")
+                .timestamp(LocalDateTime.now())
+                .build());
+
+        statsService.saveHits(hits);
+
+        verify(statRepository, times(1)).saveHits(hits);
+    }
+
+    @Test
+    void saveHits_ShouldRememberHitIdAndCountHit_OnlyAfterWriteBehindStoredIt() {
+        WriteBehindHitBuffer hitBuffer = mock(WriteBehindHitBuffer.class);
+        SlidingWindowCounters slidingWindow = mock(SlidingWindowCounters.class);
+        ReflectionTestUtils.setField(statsService, "hitBuffer", hitBuffer);
+        ReflectionTestUtils.setField(statsService, "slidingWindow", slidingWindow);
+        ReflectionTestUtils.setField(statsService, "hitDeduplicator",
+                new HitDeduplicator(new SimpleMeterRegistry(), 1000, 0.001));
+        statsService.listenToHitBuffer();
+        ArgumentCaptor<FlushListener> listener = ArgumentCaptor.forClass(FlushListener.class);
+        verify(hitBuffer).setListener(listener.capture());
+        List<EndpointHit> hits = List.of(EndpointHit.builder()
+                .app("testApp")
+                .ip("127.0.0.1")
+                .uri("/test")
+                .timestamp(LocalDateTime.now())
+                .hitId("a")
+                .build());
+
+        statsService.saveHits(hits);
+        listener.getValue().dropped(hits);
+        statsService.saveHits(hits);
+        verify(slidingWindow, never()).record(any());
+        listener.getValue().stored(hits);
+        statsService.saveHits(hits);
+
+        verify(hitBuffer, times(2)).addAll(hits);
+        verify(slidingWindow).record(hits);
+    }
+
     @Test
     void getViewStatsList_ShouldReturnUniqueStats_WhenUniqueTrue() {
         ViewsStatsRequest request = ViewsStatsRequest.builder()
@@ -68,4 +120,18 @@ class StatsServiceImplTest {
         verify(statRepository, times(1)).getStats(request);
         verify(statRepository, never()).getUniqueStats(any());
     }
+
+    @Test
+    void streamViewStats_ShouldStreamUniqueStats_WhenUniqueTrue() {
+        ViewsStatsRequest request = ViewsStatsRequest.builder()
+                .unique(true)
+                .build();
+        Consumer<ViewStats> consumer = viewStats -> {
+        };
+
+        statsService.streamViewStats(request, consumer);
+
+        verify(statRepository, times(1)).streamUniqueStats(request, consumer);
+        verify(statRepository, never()).streamStats(any(), any());
+    }
 }
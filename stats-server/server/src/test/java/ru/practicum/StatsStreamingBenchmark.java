@@ -0,0 +1,139 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dictionary.StatsDictionary;
+import ru.practicum.hll.HllSketchRepository;
+import ru.practicum.rollup.RollupQueryPlanner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ручной бенчмарк выдачи /stats без фильтра по uri на широком результате: весь список через Jackson
+ * против потоковой записи элементов по мере чтения курсором. Не запускается в составе {@code mvn test}.
+ * <p>
+ * С ограниченной кучей ({@code -DargLine=-Xmx64m}) видно главное: потоковая выдача укладывается в неё,
+ * а сборка всего списка - нет.
+ * <p>
+ * Запуск: {@code mvn test -pl stats-server/server -am -Dtest=StatsStreamingBenchmark -Dsurefire.failIfNoSpecifiedTests=false}
+ * <p>
+ * База задаётся так же, как в {@link HitIngestionBenchmark}.
+ */
+class StatsStreamingBenchmark {
+    private static final int URIS = 500_000;
+    private static final int FETCH_SIZE = 1000;
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TransactionTemplate transactionTemplate;
+    private StatsRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("stats.benchmark.url", "jdbc:postgresql://localhost:5434/ewm-stats"),
+                System.getProperty("stats.benchmark.username", "root"),
+                System.getProperty("stats.benchmark.password", "root"));
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO stats_app (id, name) VALUES (1, 'ewm-main-service')");
+        jdbcTemplate.update("INSERT INTO stats_uri (id, uri) SELECT i, '/events/' || i FROM generate_series(1, ?) i",
+                URIS);
+        jdbcTemplate.update("INSERT INTO stats_rollup (granularity, bucket, app_id, uri_id, hits) " +
+                "SELECT 'DAY', ?, 1, i, i % 1000 FROM generate_series(1, ?) i", DAY, URIS);
+        jdbcTemplate.execute("ANALYZE");
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new StatsRepositoryImpl(jdbcTemplate, new ViewStatsMapper(), new RollupQueryPlanner(),
+                new HllSketchRepository(jdbcTemplate), new StatsDictionary(jdbcTemplate, 100_000));
+        ReflectionTestUtils.setField(repository, "fetchSize", FETCH_SIZE);
+    }
+
+    @Test
+    void listVersusStream() {
+        ViewsStatsRequest request = ViewsStatsRequest.builder()
+                .start(DAY)
+                .end(DAY.plusDays(1))
+                .uris(List.of())
+                .build();
+
+        for (int round = 0; round < 3; round++) {
+            measure("stream", () -> transactionTemplate.executeWithoutResult(status -> {
+                try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+                    generator.writeStartArray();
+                    repository.streamStats(request, viewStats -> {
+                        try {
+                            generator.writeObject(viewStats);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    generator.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            measure("list", () -> {
+                List<ViewStats> stats = repository.getStats(request);
+                objectMapper.writeValue(OutputStream.nullOutputStream(), stats);
+            });
+        }
+    }
+
+    /**
+     * Пиковый прирост занятой кучи снимается фоновым потоком раз в миллисекунду.
+     */
+    private void measure(String mode, Action action) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong peak = new AtomicLong(baseline);
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+        long startedAt = System.nanoTime();
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-6s rows=%d   out of memory%n", mode, URIS);
+            return;
+        } finally {
+            sampler.interrupt();
+        }
+        long millis = (System.nanoTime() - startedAt) / 1_000_000;
+        System.out.printf("%-6s rows=%d %6d ms   peak heap +%5d MiB%n",
+                mode, URIS, millis, (peak.get() - baseline) >> 20);
+    }
+
+    @FunctionalInterface
+    private interface Action {
+        void run() throws IOException;
+    }
+}
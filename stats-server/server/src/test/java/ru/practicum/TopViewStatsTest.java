@@ -0,0 +1,67 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopViewStatsTest {
+
+    @Test
+    void page_ShouldReturnTopByHitsWithOffset() {
+        Stream<ViewStats> stats = IntStream.range(0, 100)
+                .mapToObj(i -> new ViewStats("app", "/events/" + i, (long) i));
+
+        List<ViewStats> page = TopViewStats.page(stats, ViewsStatsRequest.builder().limit(3).offset(2).build());
+
+        assertEquals(List.of("/events/97", "/events/96", "/events/95"), page.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void page_ShouldBreakTiesByAppAndUri() {
+        Stream<ViewStats> stats = Stream.of(
+                new ViewStats("b", "/a", 5L),
+                new ViewStats("a", "/b", 5L),
+                new ViewStats("a", "/a", 5L));
+
+        List<ViewStats> page = TopViewStats.page(stats, ViewsStatsRequest.builder().limit(2).build());
+
+        assertEquals("a/a", page.get(0).getApp() + page.get(0).getUri());
+        assertEquals("a/b", page.get(1).getApp() + page.get(1).getUri());
+    }
+
+    @Test
+    void page_ShouldBreakTiesByCodePoints_AsPostgresCollateC() {
+        Stream<ViewStats> stats = Stream.of(
+                new ViewStats("app", "/events/\uD83D\uDE00", 5L),
+                new ViewStats("app", "/events/\uFF21", 5L),
+                new ViewStats("app", "/events/a", 5L),
+                new ViewStats("app", "/events/B", 5L),
+                new ViewStats("app", "/events/b-c", 5L),
+                new ViewStats("app", "/events/bc", 7L));
+
+        List<ViewStats> page = TopViewStats.page(stats, ViewsStatsRequest.builder().limit(5).offset(1).build());
+
+        assertEquals(List.of("/events/B", "/events/a", "/events/b-c", "/events/\uFF21", "/events/\uD83D\uDE00"),
+                page.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void page_ShouldSortEverything_WhenNoLimit() {
+        Stream<ViewStats> stats = Stream.of(new ViewStats("app", "/1", 1L), new ViewStats("app", "/2", 2L));
+
+        List<ViewStats> page = TopViewStats.page(stats, ViewsStatsRequest.builder().offset(1).build());
+
+        assertEquals(List.of("/1"), page.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void page_ShouldReturnEmpty_WhenOffsetBeyondResult() {
+        Stream<ViewStats> stats = Stream.of(new ViewStats("app", "/1", 1L));
+
+        assertTrue(TopViewStats.page(stats, ViewsStatsRequest.builder().limit(10).offset(5).build()).isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.SqlArrayValue;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Ручной бенчмарк накладных расходов на разбор и планирование запроса с фильтром по uri: литеральный
+ * {@code uri_id IN (...)}, где каждый набор uri - новый текст запроса, против {@code uri_id = ANY(?)} с массивом.
+ * Не запускается в составе {@code mvn test}.
+ * <p>
+ * Запуск: {@code mvn test -pl stats-server/server -am -Dtest=UriFilterBenchmark -Dsurefire.failIfNoSpecifiedTests=false}
+ * <p>
+ * База задаётся так же, как в {@link HitIngestionBenchmark}.
+ */
+class UriFilterBenchmark {
+    private static final int[] URI_COUNTS = {1, 50, 500};
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 1000;
+    private static final String QUERY = "SELECT uri_id, COUNT(ip) AS hits FROM stats WHERE created >= ? AND created <= ? ";
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                System.getProperty("stats.benchmark.url",
+                        "jdbc:postgresql://localhost:5434/ewm-stats?prepareThreshold=1"
+                                + "&options=-c%20plan_cache_mode=force_custom_plan"),
+                System.getProperty("stats.benchmark.username", "root"),
+                System.getProperty("stats.benchmark.password", "root"), true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO stats_uri (id, uri) SELECT i, '/events/' || i FROM generate_series(0, 4999) i");
+        jdbcTemplate.batchUpdate("INSERT INTO stats (app_id, uri_id, ip, created) VALUES (1, ?, '10.0.0.1', ?)",
+                IntStream.range(0, 5000)
+                        .mapToObj(i -> new Object[]{i, Timestamp.valueOf(LocalDateTime.now().minusMinutes(i))})
+                        .toList());
+    }
+
+    @Test
+    void parseAndPlanOverhead() {
+        Timestamp start = Timestamp.valueOf(LocalDateTime.now().minusDays(1));
+        Timestamp end = Timestamp.valueOf(LocalDateTime.now());
+        for (int uriCount : URI_COUNTS) {
+            double literal = measure(iteration -> {
+                List<Integer> uriIds = uriIds(uriCount, iteration);
+                String query = QUERY + "AND uri_id IN (" + uriIds.stream().map(String::valueOf)
+                        .collect(Collectors.joining(", ")) + ") GROUP BY uri_id";
+                jdbcTemplate.queryForList(query, start, end);
+            });
+            double array = measure(iteration -> {
+                List<Integer> uriIds = uriIds(uriCount, iteration);
+                jdbcTemplate.queryForList(QUERY + QueryParameters.URIS_CONDITION + "GROUP BY uri_id",
+                        start, end, new SqlArrayValue("integer", uriIds.toArray()));
+            });
+            System.out.printf("uris=%-4d IN (literals) %8.1f us/query   = ANY(?) %8.1f us/query%n",
+                    uriCount, literal, array);
+        }
+    }
+
+    private double measure(IterationBody body) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            body.run(-i - 1);
+        }
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            body.run(i);
+        }
+        return (System.nanoTime() - startedAt) / 1000.0 / ITERATIONS;
+    }
+
+    private List<Integer> uriIds(int count, int iteration) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Math.floorMod(iteration * 7 + i, 5000))
+                .toList();
+    }
+
+    @FunctionalInterface
+    private interface IterationBody {
+        void run(int iteration);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UriPatternsTest {
+
+    @Test
+    void matcher_ShouldMatchExactValuesAndPatterns() {
+        Predicate<String> matcher = UriPatterns.matcher(List.of("/compilations", "/events/*"));
+
+        assertTrue(matcher.test("/compilations"));
+        assertTrue(matcher.test("/events/1"));
+        assertTrue(matcher.test("/events/1/requests"));
+        assertFalse(matcher.test("/events"));
+        assertFalse(matcher.test("/compilations/1"));
+    }
+
+    @Test
+    void matcher_ShouldTreatRegexCharactersLiterally() {
+        Predicate<String> matcher = UriPatterns.matcher(List.of("/a.b/*/c"));
+
+        assertTrue(matcher.test("/a.b/x/y/c"));
+        assertFalse(matcher.test("/aXb/x/c"));
+    }
+
+    @Test
+    void toLike_ShouldEscapeLikeCharacters() {
+        assertEquals("/events/%", UriPatterns.toLike("/events/*"));
+        assertEquals("/a\\_b\\%c\\\\%", UriPatterns.toLike("/a_b%c\\*"));
+        assertEquals("/a_b", UriPatterns.prefix("/a_b*/c*"));
+    }
+}
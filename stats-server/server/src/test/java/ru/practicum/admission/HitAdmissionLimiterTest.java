@@ -0,0 +1,70 @@
+package ru.practicum.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.exception.HitRejectedException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HitAdmissionLimiterTest {
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final HitAdmissionLimiter limiter = new HitAdmissionLimiter(meterRegistry, 4, 2, 6,
+            Duration.ofMillis(200), 0.5, now::get);
+
+    @Test
+    void write_ShouldRejectOrDivert_WhenLimitIsReached() {
+        List<String> writes = new ArrayList<>();
+
+        nested(4, () -> {
+            assertThrows(HitRejectedException.class, () -> limiter.write(() -> writes.add("store"), null));
+            limiter.write(() -> writes.add("store"), () -> writes.add("buffer"));
+        });
+
+        assertEquals(List.of("buffer"), writes);
+        assertEquals(1.0, meterRegistry.get("stats.admission.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("stats.admission.diverted").counter().count());
+        assertEquals(0.0, meterRegistry.get("stats.admission.in_flight").gauge().value());
+    }
+
+    @Test
+    void write_ShouldShrinkLimit_WhenWritesAreSlowOrFail() {
+        limiter.write(() -> now.addAndGet(SLOW), null);
+        assertEquals(2, limiter.limit());
+
+        assertThrows(IllegalStateException.class, () -> limiter.write(() -> {
+            throw new IllegalStateException("database is down");
+        }, null));
+        assertEquals(2, limiter.limit());
+        assertEquals(2.0, meterRegistry.get("stats.admission.limit").gauge().value());
+    }
+
+    @Test
+    void write_ShouldGrowLimit_WhenBusyWritesAreFast() {
+        limiter.write(() -> now.addAndGet(FAST), null);
+        assertEquals(4, limiter.limit());
+
+        nested(4, () -> now.addAndGet(FAST));
+        assertEquals(6, limiter.limit());
+
+        nested(6, () -> now.addAndGet(FAST));
+        assertEquals(6, limiter.limit());
+    }
+
+    // Вложенные вызовы держат depth записей одновременно
+    private void nested(int depth, Runnable innermost) {
+        if (depth == 0) {
+            innermost.run();
+            return;
+        }
+        limiter.write(() -> nested(depth - 1, innermost), null);
+    }
+}
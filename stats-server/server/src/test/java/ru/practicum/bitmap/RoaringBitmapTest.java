@@ -0,0 +1,73 @@
+package ru.practicum.bitmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTest {
+
+    @Test
+    void add_ShouldMatchBitSet_ForSparseAndDenseBlocks() {
+        Random random = new Random(42);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 20_000; i++) {
+            // Первый блок переполняет массив и становится битовой картой, остальные остаются массивами
+            int value = i % 2 == 0 ? random.nextInt(10_000) : random.nextInt(5_000_000);
+            bitmap.add(value);
+            expected.set(value);
+        }
+
+        assertEquals(expected.cardinality(), bitmap.cardinality());
+        for (int value = 0; value < 5_000_000; value += 7) {
+            assertEquals(expected.get(value), bitmap.contains(value));
+        }
+    }
+
+    @Test
+    void or_ShouldUnionBlocks_WithoutChangingArgument() {
+        RoaringBitmap left = bitmap(0, 5_000, 1);
+        RoaringBitmap right = bitmap(2_500, 7_500, 1);
+        right.add(1 << 20);
+        RoaringBitmap sparse = bitmap(1, 3_000, 2);
+
+        left.or(right).or(sparse);
+
+        assertEquals(7_502, left.cardinality());
+        assertTrue(left.contains(1 << 20));
+        assertEquals(5_002, right.cardinality());
+
+        RoaringBitmap arrays = bitmap(0, 4_000, 2).or(bitmap(1, 4_000, 2));
+        assertEquals(4_001, arrays.cardinality());
+        assertTrue(arrays.contains(3_999));
+    }
+
+    @Test
+    void toBytes_ShouldRoundTrip_AndStayCompact() {
+        RoaringBitmap bitmap = bitmap(0, 10_000, 1);
+        bitmap.add(70_000);
+        bitmap.add(Integer.MAX_VALUE);
+
+        byte[] bytes = bitmap.toBytes();
+        RoaringBitmap restored = RoaringBitmap.fromBytes(bytes);
+
+        assertEquals(bitmap.cardinality(), restored.cardinality());
+        assertTrue(restored.contains(9_999));
+        assertTrue(restored.contains(70_000));
+        assertTrue(restored.contains(Integer.MAX_VALUE));
+        assertFalse(restored.contains(10_001));
+        assertEquals(4 + 4 + 8192 + 4 + 2 + 4 + 2, bytes.length);
+        assertEquals(0, RoaringBitmap.fromBytes(new RoaringBitmap().toBytes()).cardinality());
+    }
+
+    private static RoaringBitmap bitmap(int from, int to, int step) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value = from; value <= to; value += step) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,206 @@
+package ru.practicum.buffer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.exception.HitRejectedException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class WriteBehindHitBufferTest {
+
+    private final StatsRepository statsRepository = mock(StatsRepository.class);
+
+    @Test
+    void ringBuffer_ShouldKeepFifoOrderAcrossWrapAround() {
+        HitRingBuffer ring = new HitRingBuffer(4);
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(hit("/events/" + i)));
+            }
+            assertFalse(ring.offer(hit("/overflow")));
+            for (int i = 0; i < 4; i++) {
+                assertEquals("/events/" + i, ring.poll().getUri());
+            }
+            assertNull(ring.poll());
+        }
+    }
+
+    @Test
+    void ringBuffer_ShouldNotLoseHitsUnderConcurrentProducers() throws Exception {
+        HitRingBuffer ring = new HitRingBuffer(1 << 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            int producer = t;
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    ring.offer(hit("/p" + producer + "/" + i));
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Set<String> uris = ConcurrentHashMap.newKeySet();
+        List<EndpointHit> drained = new ArrayList<>();
+        ring.drainTo(drained, Integer.MAX_VALUE);
+        drained.forEach(h -> uris.add(h.getUri()));
+        assertEquals(40_000, uris.size());
+    }
+
+    @Test
+    void add_ShouldFlushBatchWhenSizeTriggerReached() {
+        WriteBehindHitBuffer buffer = buffer(16, OverflowPolicy.REJECT, 4, Duration.ofMinutes(1));
+        buffer.start();
+
+        for (int i = 0; i < 4; i++) {
+            buffer.add(hit("/events/" + i));
+        }
+
+        verify(statsRepository, timeout(2000)).saveHits(argThat(batch -> batch.size() == 4));
+    }
+
+    @Test
+    void add_ShouldFlushOnTimeTrigger() {
+        WriteBehindHitBuffer buffer = buffer(16, OverflowPolicy.REJECT, 100, Duration.ofMillis(50));
+        buffer.start();
+
+        buffer.add(hit("/events/1"));
+
+        verify(statsRepository, timeout(2000)).saveHits(argThat(batch -> batch.size() == 1));
+    }
+
+    @Test
+    void add_ShouldRejectWhenFullAndPolicyIsReject() {
+        WriteBehindHitBuffer buffer = buffer(2, OverflowPolicy.REJECT, 100, Duration.ofMinutes(1));
+        buffer.start();
+
+        buffer.add(hit("/events/1"));
+        buffer.add(hit("/events/2"));
+
+        assertThrows(HitRejectedException.class, () -> buffer.add(hit("/events/3")));
+    }
+
+    @Test
+    void ringBuffer_ShouldOfferAllOrNothing() {
+        HitRingBuffer ring = new HitRingBuffer(4);
+        assertTrue(ring.offer(hit("/events/0")));
+
+        assertFalse(ring.offerAll(List.of(hit("/events/1"), hit("/events/2"), hit("/events/3"), hit("/events/4"))));
+        assertEquals(1, ring.size());
+        assertTrue(ring.offerAll(List.of(hit("/events/1"), hit("/events/2"), hit("/events/3"))));
+        assertFalse(ring.offer(hit("/overflow")));
+        for (int i = 0; i < 4; i++) {
+            assertEquals("/events/" + i, ring.poll().getUri());
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void addAll_ShouldQueueNothing_WhenBatchIsRejected() {
+        WriteBehindHitBuffer buffer = buffer(4, OverflowPolicy.REJECT, 100, Duration.ofMinutes(1));
+        buffer.start();
+        buffer.add(hit("/events/1"));
+        buffer.add(hit("/events/2"));
+
+        assertThrows(HitRejectedException.class,
+                () -> buffer.addAll(List.of(hit("/events/3"), hit("/events/4"), hit("/events/5"))));
+
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    void add_ShouldEvictOldestWhenPolicyIsDropOldest() {
+        WriteBehindHitBuffer buffer = buffer(2, OverflowPolicy.DROP_OLDEST, 100, Duration.ofMinutes(1));
+        buffer.start();
+
+        buffer.add(hit("/events/1"));
+        buffer.add(hit("/events/2"));
+        buffer.add(hit("/events/3"));
+
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    void stop_ShouldFlushRemainingHits() throws Exception {
+        WriteBehindHitBuffer buffer = buffer(16, OverflowPolicy.REJECT, 100, Duration.ofMinutes(1));
+        buffer.start();
+        buffer.add(hit("/events/1"));
+        buffer.add(hit("/events/2"));
+
+        buffer.stop();
+
+        verify(statsRepository).saveHits(argThat(batch -> batch.size() == 2));
+        verify(statsRepository, times(1)).saveHits(anyList());
+        assertThrows(HitRejectedException.class, () -> buffer.add(hit("/events/3")));
+    }
+
+    @Test
+    void flush_ShouldDropOnlyHitThatCannotBeStored() {
+        doThrow(new DataIntegrityViolationException("null value in column \"uri_id\""))
+                .when(statsRepository).saveHits(argThat(batch -> batch.stream().anyMatch(h -> h.getUri() == null)));
+        WriteBehindHitBuffer buffer = buffer(16, OverflowPolicy.REJECT, 4, Duration.ofMinutes(1));
+        FlushListener listener = mock(FlushListener.class);
+        buffer.setListener(listener);
+        buffer.start();
+
+        buffer.add(hit("/events/1"));
+        buffer.add(hit(null));
+        buffer.add(hit("/events/3"));
+        buffer.add(hit("/events/4"));
+
+        verify(statsRepository, timeout(2000)).saveHits(argThat(batch -> batch.size() == 2
+                && batch.get(0).getUri().equals("/events/3")));
+        verify(statsRepository).saveHits(argThat(batch -> batch.size() == 1
+                && "/events/1".equals(batch.get(0).getUri())));
+        verify(statsRepository, times(5)).saveHits(anyList());
+        verify(listener).dropped(argThat(hits -> hits.size() == 1 && hits.get(0).getUri() == null));
+        verify(listener, times(2)).stored(argThat(hits -> hits.stream().allMatch(h -> h.getUri() != null)));
+    }
+
+    @Test
+    void flush_ShouldStopRetryingTransientError_AfterMaxAttempts() {
+        doThrow(new QueryTimeoutException("canceling statement due to statement timeout"))
+                .when(statsRepository).saveHits(anyList());
+        WriteBehindHitBuffer buffer = buffer(16, OverflowPolicy.REJECT, 1, Duration.ofMinutes(1));
+        buffer.start();
+
+        buffer.add(hit("/events/1"));
+
+        verify(statsRepository, after(2000).times(2)).saveHits(anyList());
+        assertEquals(0, buffer.size());
+    }
+
+    private WriteBehindHitBuffer buffer(int capacity, OverflowPolicy policy, int batchSize, Duration flushInterval) {
+        return new WriteBehindHitBuffer(statsRepository, new SimpleMeterRegistry(), capacity, policy, batchSize,
+                flushInterval, Duration.ofMillis(100), Duration.ofSeconds(5), 2);
+    }
+
+    private EndpointHit hit(String uri) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("127.0.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsResponseCacheTest {
+    private final AtomicLong ticker = new AtomicLong();
+    private final StatsResponseCache cache = new StatsResponseCache(new SimpleMeterRegistry(), 100,
+            Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofMinutes(5), ticker::get);
+    private final List<ViewsStatsRequest> loaded = new ArrayList<>();
+    private final Function<ViewsStatsRequest, List<ViewStats>> loader = request -> {
+        loaded.add(request);
+        return List.of(new ViewStats("ewm-main-service", "/events/1", 1L));
+    };
+
+    @Test
+    void get_ShouldLoadOnce_ForEquivalentRequests() {
+        LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+
+        cache.get(request(minute.minusHours(1), minute.plusSeconds(21), "/events/2", "/events/1"), loader);
+        cache.get(request(minute.minusHours(1), minute.plusSeconds(29), "/events/1", "/events/2", "/events/1"),
+                loader);
+
+        assertEquals(1, loaded.size());
+        assertEquals(minute.plusSeconds(20), loaded.get(0).getEnd());
+        assertEquals(List.of("/events/1", "/events/2"), loaded.get(0).getUris());
+    }
+
+    @Test
+    void get_ShouldKeepEnd_WhenRoundingEmptiesRange() {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusSeconds(3);
+
+        cache.get(request(start, start.plusSeconds(2), "/events/1"), loader);
+
+        assertEquals(start.plusSeconds(2), loaded.get(0).getEnd());
+    }
+
+    @Test
+    void get_ShouldKeepEnd_ForClosedRange() {
+        LocalDateTime end = LocalDateTime.of(2020, 1, 1, 10, 30, 15);
+
+        cache.get(request(end.minusDays(1), end, "/events/1"), loader);
+
+        assertEquals(end, loaded.get(0).getEnd());
+    }
+
+    @Test
+    void get_ShouldExpireLiveRange_AfterTtl() {
+        LocalDateTime now = LocalDateTime.now();
+        ViewsStatsRequest request = request(now.minusHours(1), now, "/events/1");
+
+        cache.get(request, loader);
+        ticker.addAndGet(Duration.ofSeconds(11).toNanos());
+        cache.get(request, loader);
+
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    void get_ShouldKeepClosedRange_AfterTtl() {
+        ViewsStatsRequest request = request(LocalDateTime.of(2020, 1, 1, 0, 0),
+                LocalDateTime.of(2020, 1, 2, 0, 0), "/events/1");
+
+        cache.get(request, loader);
+        ticker.addAndGet(Duration.ofDays(1).toNanos());
+        cache.get(request, loader);
+
+        assertEquals(1, loaded.size());
+        assertEquals(1, cache.size());
+    }
+
+    private ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, String... uris) {
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .uris(List.of(uris))
+                .build();
+    }
+}
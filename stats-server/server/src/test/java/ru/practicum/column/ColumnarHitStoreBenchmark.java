@@ -0,0 +1,84 @@
+package ru.practicum.column;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Ручной бенчмарк агрегатов по колоночному хранилищу без БД: 20 млн хитов за сутки по 10 000 uri.
+ * Не запускается в составе {@code mvn test}; куче нужно около 1 ГиБ ({@code -DargLine=-Xmx2g}).
+ * <p>
+ * Запуск: {@code mvn test -pl stats-server/server -am -Dtest=ColumnarHitStoreBenchmark -Dsurefire.failIfNoSpecifiedTests=false}
+ */
+class ColumnarHitStoreBenchmark {
+    private static final int HITS = 20_000_000;
+    private static final int URIS = 10_000;
+    private static final int IPS = 100_000;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 7, 2, 0, 0);
+
+    @Test
+    void aggregate() {
+        ColumnarHitStore store = new ColumnarHitStore(mock(StatsRepository.class), new SimpleMeterRegistry(),
+                Duration.ofDays(2), 65536);
+        store.rebuild(NOW);
+        List<String> uris = new ArrayList<>(URIS);
+        List<String> ips = new ArrayList<>(IPS);
+        for (int i = 0; i < URIS; i++) {
+            uris.add("/events/" + i);
+        }
+        for (int i = 0; i < IPS; i++) {
+            ips.add("10." + (i >> 16) + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+        }
+        long startedAt = System.nanoTime();
+        List<EndpointHit> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < HITS; i++) {
+            batch.add(EndpointHit.builder()
+                    .app("ewm-main-service")
+                    .uri(uris.get((int) (i * 2654435761L % URIS)))
+                    .ip(ips.get((int) (i * 40503L % IPS)))
+                    .timestamp(NOW.minusDays(1).plusNanos(i * 4_320_000L))
+                    .build());
+            if (batch.size() == 10_000) {
+                store.record(batch, NOW);
+                batch.clear();
+            }
+        }
+        System.out.printf("loaded %d hits in %d ms%n", store.size(), (System.nanoTime() - startedAt) / 1_000_000);
+
+        for (int round = 0; round < 5; round++) {
+            measure(store, "all, day", request(NOW.minusDays(1), NOW, false));
+            measure(store, "all, hour", request(NOW.minusHours(1), NOW, false));
+            measure(store, "10 uris, day", request(NOW.minusDays(1), NOW, false, uris.subList(0, 10)));
+            measure(store, "unique, hour", request(NOW.minusHours(1), NOW, true));
+        }
+    }
+
+    private void measure(ColumnarHitStore store, String name, ViewsStatsRequest request) {
+        long startedAt = System.nanoTime();
+        int rows = store.query(request, NOW).orElseThrow().size();
+        System.out.printf("%-14s rows=%5d %7.1f ms%n", name, rows, (System.nanoTime() - startedAt) / 1e6);
+    }
+
+    private static ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, boolean unique,
+                                             List<String> uris) {
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .unique(unique)
+                .uris(uris)
+                .build();
+    }
+
+    private static ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, boolean unique) {
+        return request(start, end, unique, List.of());
+    }
+}
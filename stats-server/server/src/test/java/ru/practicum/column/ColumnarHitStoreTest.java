@@ -0,0 +1,160 @@
+package ru.practicum.column;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ColumnarHitStoreTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 7, 2, 12, 0, 30);
+
+    private final StatsRepository statsRepository = mock(StatsRepository.class);
+    private final ColumnarHitStore store = new ColumnarHitStore(statsRepository, new SimpleMeterRegistry(),
+            Duration.ofDays(1), 4);
+
+    @Test
+    void rebuild_ShouldLoadHitsSinceHorizon() {
+        doAnswer(invocation -> {
+            Consumer<EndpointHit> consumer = invocation.getArgument(1);
+            consumer.accept(hit("/events/1", "10.0.0.1", NOW.minusHours(10)));
+            consumer.accept(hit("/events/1", "10.0.0.2", NOW.minusHours(5)));
+            return null;
+        }).when(statsRepository).streamHitsSince(eq(NOW.minusDays(1)), any());
+
+        store.rebuild(NOW);
+
+        List<ViewStats> stats = store.query(request(NOW.minusHours(12), NOW, false), NOW).orElseThrow();
+        assertEquals(2L, stats.get(0).getHits());
+    }
+
+    @Test
+    void query_ShouldCountHitsInRange_AcrossSealedAndActiveChunks() {
+        store.rebuild(NOW);
+        store.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusHours(3)),
+                hit("/events/2", "10.0.0.1", NOW.minusHours(1)),
+                hit("/events/1", "10.0.0.1", NOW.minusHours(20)),
+                hit("/events/1", "10.0.0.1", NOW.minusMinutes(30)),
+                hit("/events/1", "10.0.0.2", NOW.minusMinutes(10)),
+                hit("/events/2", "10.0.0.1", NOW.minusDays(2))), NOW);
+
+        List<ViewStats> stats = store.query(request(NOW.minusHours(4), NOW, false), NOW).orElseThrow();
+
+        assertEquals(5, store.size(), "the hit older than the horizon is skipped");
+        assertEquals(2, stats.size());
+        assertEquals("/events/1", stats.get(0).getUri());
+        assertEquals(3L, stats.get(0).getHits());
+        assertEquals(1L, stats.get(1).getHits());
+    }
+
+    @Test
+    void query_ShouldCountDistinctIps_ForRequestedUris() {
+        store.rebuild(NOW);
+        store.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusHours(3)),
+                hit("/events/1", "10.0.0.1", NOW.minusHours(2)),
+                hit("/events/1", "10.0.0.2", NOW.minusHours(2)),
+                hit("/events/1", "10.0.0.2", NOW.minusHours(1)),
+                hit("/events/2", "10.0.0.3", NOW.minusHours(1))), NOW);
+
+        List<ViewStats> stats = store.query(request(NOW.minusHours(4), NOW, true, "/events/1"), NOW).orElseThrow();
+
+        assertEquals(1, stats.size());
+        assertEquals(2L, stats.get(0).getHits());
+    }
+
+    @Test
+    void query_ShouldCountOnlyRequestedApplication() {
+        store.rebuild(NOW);
+        store.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusHours(2)),
+                hit("other-service", "/events/1", "10.0.0.2", NOW.minusHours(2)),
+                hit("other-service", "/events/2", "10.0.0.2", NOW.minusHours(1))), NOW);
+
+        ViewsStatsRequest request = request(NOW.minusDays(1), NOW, false).toBuilder()
+                .application("other-service")
+                .build();
+        List<ViewStats> stats = store.query(request, NOW).orElseThrow();
+
+        assertEquals(2, stats.size());
+        assertTrue(stats.stream().allMatch(viewStats -> viewStats.getApp().equals("other-service")));
+        assertTrue(store.query(request.toBuilder().application("nope").build(), NOW).orElseThrow().isEmpty());
+    }
+
+    @Test
+    void query_ShouldFallBack_WhenStartBeforeHorizon() {
+        store.rebuild(NOW);
+
+        assertTrue(store.query(request(NOW.minusDays(2), NOW, false), NOW).isEmpty());
+    }
+
+    @Test
+    void prune_ShouldDropChunksOlderThanHorizon() {
+        store.rebuild(NOW);
+        store.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusHours(23)),
+                hit("/events/1", "10.0.0.1", NOW.minusHours(23)),
+                hit("/events/1", "10.0.0.1", NOW.minusHours(23)),
+                hit("/events/1", "10.0.0.1", NOW.minusHours(23)),
+                hit("/events/1", "10.0.0.1", NOW.minusHours(1))), NOW);
+
+        store.prune(NOW.plusHours(2));
+
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void prune_ShouldForgetPairsAndIps_OnlySeenInDroppedChunks() {
+        store.rebuild(NOW);
+        store.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusHours(23)),
+                hit("/events/2", "10.0.0.2", NOW.minusHours(23)),
+                hit("/events/3", "10.0.0.3", NOW.minusHours(23)),
+                hit("/events/4", "10.0.0.4", NOW.minusHours(23)),
+                hit("/events/5", "10.0.0.5", NOW.minusHours(1))), NOW);
+        assertEquals(5, store.knownPairs());
+        assertEquals(5, store.knownIps());
+
+        store.prune(NOW.plusHours(2));
+        store.record(List.of(hit("/events/6", "10.0.0.5", NOW.plusHours(1))), NOW.plusHours(2));
+
+        assertEquals(2, store.knownPairs());
+        assertEquals(1, store.knownIps());
+        List<ViewStats> stats = store.query(request(NOW.minusHours(2), NOW.plusHours(2), true), NOW.plusHours(2))
+                .orElseThrow();
+        assertEquals(List.of("/events/5", "/events/6"), stats.stream().map(ViewStats::getUri).sorted().toList());
+    }
+
+    private static EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return hit("ewm-main-service", uri, ip, timestamp);
+    }
+
+    private static EndpointHit hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, boolean unique, String... uris) {
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .unique(unique)
+                .uris(List.of(uris))
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.compaction;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HitCompactorTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final CompactionWatermark watermark = new CompactionWatermark(jdbcTemplate);
+    private final HitCompactor compactor = new HitCompactor(jdbcTemplate, watermark);
+
+    @Test
+    void compact_ShouldAdvanceWatermarkToDayStart_ThenDeleteInBatches() {
+        ReflectionTestUtils.setField(compactor, "age", Duration.ofDays(60));
+        ReflectionTestUtils.setField(compactor, "batchSize", 2);
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 0, 0));
+        when(jdbcTemplate.queryForList(anyString(), eq(Timestamp.class), any())).thenReturn(List.of(cutoff));
+        when(jdbcTemplate.update(startsWith("DELETE FROM stats WHERE"), eq(cutoff), eq(2))).thenReturn(2, 2, 1);
+        when(jdbcTemplate.update(startsWith("DELETE FROM stats_rollup"), eq(cutoff), eq(2))).thenReturn(0);
+
+        compactor.compact(LocalDateTime.of(2025, 3, 2, 15, 30));
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO stats_watermark"), eq("compaction"), eq(cutoff));
+        verify(jdbcTemplate, times(3)).update(startsWith("DELETE FROM stats WHERE"), eq(cutoff), eq(2));
+        verify(jdbcTemplate, times(1)).update(startsWith("DELETE FROM stats_rollup"), eq(cutoff), eq(2));
+    }
+
+    @Test
+    void compact_ShouldDeleteBeforeStoredWatermark_WhenItIsAhead() {
+        ReflectionTestUtils.setField(compactor, "age", Duration.ofDays(60));
+        ReflectionTestUtils.setField(compactor, "batchSize", 100);
+        Timestamp stored = Timestamp.valueOf(LocalDateTime.of(2025, 2, 1, 0, 0));
+        when(jdbcTemplate.queryForList(anyString(), eq(Timestamp.class), any())).thenReturn(List.of(stored));
+
+        compactor.compact(LocalDateTime.of(2025, 3, 2, 15, 30));
+
+        verify(jdbcTemplate).update(startsWith("DELETE FROM stats WHERE"), eq(stored), eq(100));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM stats_rollup"), eq(stored), eq(100));
+    }
+}
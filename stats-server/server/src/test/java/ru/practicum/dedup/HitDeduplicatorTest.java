@@ -0,0 +1,78 @@
+package ru.practicum.dedup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HitDeduplicatorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HitDeduplicator deduplicator = new HitDeduplicator(meterRegistry, 10_000, 0.001);
+    private final List<String> stored = new ArrayList<>();
+
+    @Test
+    void save_ShouldDropRepeatedHitIds_AcrossAndWithinBatches() {
+        save(hit("a"), hit("b"), hit(null));
+        save(hit("a"), hit("c"), hit("c"), hit(null));
+
+        assertEquals(List.of("a", "b", "-", "c", "-"), stored);
+        assertEquals(2.0, meterRegistry.get("stats.dedup.dropped").counter().count());
+        assertEquals(5.0, meterRegistry.get("stats.dedup.checked").counter().count());
+    }
+
+    @Test
+    void claim_ShouldAcceptRetry_OnlyAfterHitWasNotStored() {
+        List<EndpointHit> first = deduplicator.claim(List.of(hit("a")));
+
+        assertTrue(deduplicator.claim(List.of(hit("a"))).isEmpty(), "the hit is still being stored");
+        deduplicator.release(first, false);
+        save(hit("a"));
+
+        assertEquals(List.of("a"), stored);
+    }
+
+    @Test
+    void rotate_ShouldForgetHitIds_AfterTwoWindows() {
+        save(hit("a"));
+        deduplicator.rotate();
+        save(hit("a"));
+        deduplicator.rotate();
+        save(hit("a"));
+
+        assertEquals(List.of("a", "a"), stored);
+    }
+
+    @Test
+    void metrics_ShouldReportFillAndMemory() {
+        assertEquals(0.0, meterRegistry.get("stats.dedup.false_positive_rate").gauge().value());
+
+        for (int i = 0; i < 10_000; i++) {
+            save(hit("hit-" + i));
+        }
+
+        double falsePositiveRate = meterRegistry.get("stats.dedup.false_positive_rate").gauge().value();
+        assertTrue(falsePositiveRate > 0 && falsePositiveRate < 0.001, "rate " + falsePositiveRate);
+        assertTrue(meterRegistry.get("stats.dedup.memory").gauge().value() > 2 * 10_000);
+    }
+
+    private void save(EndpointHit... hits) {
+        List<EndpointHit> accepted = deduplicator.claim(List.of(hits));
+        accepted.forEach(hit -> stored.add(hit.getHitId() == null ? "-" : hit.getHitId()));
+        deduplicator.release(accepted, true);
+    }
+
+    private static EndpointHit hit(String hitId) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("10.0.0.1")
+                .timestamp(LocalDateTime.of(2025, 1, 2, 10, 0))
+                .hitId(hitId)
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.dictionary;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IpAddressesTest {
+
+    @Test
+    void isValid_ShouldAcceptIpv4AndIpv6() {
+        assertTrue(IpAddresses.isValid("127.0.0.1"));
+        assertTrue(IpAddresses.isValid("255.255.255.255"));
+        assertTrue(IpAddresses.isValid("2001:db8::1"));
+        assertTrue(IpAddresses.isValid("::ffff:10.0.0.1"));
+    }
+
+    @Test
+    void isValid_ShouldRejectEverythingElse() {
+        assertFalse(IpAddresses.isValid(null));
+        assertFalse(IpAddresses.isValid("unknown"));
+        assertFalse(IpAddresses.isValid("256.0.0.1"));
+        assertFalse(IpAddresses.isValid("10.0.0.1/24"));
+        assertFalse(IpAddresses.isValid("2001:db8::g"));
+        assertFalse(IpAddresses.isValid("localhost"));
+    }
+
+    @Test
+    void canonical_ShouldGiveOneFormPerAddress() {
+        assertEquals(IpAddresses.canonical("::1"), IpAddresses.canonical("0:0:0:0:0:0:0:1"));
+        assertEquals("0:0:0:0:0:0:0:1", IpAddresses.canonical("::1"));
+        assertEquals(IpAddresses.canonical("2001:DB8::1"), IpAddresses.canonical("2001:db8:0:0:0:0:0:1"));
+        assertEquals("10.0.0.1", IpAddresses.canonical("::ffff:10.0.0.1"));
+        assertEquals("127.0.0.1", IpAddresses.canonical("127.0.0.1"));
+        assertThrows(IllegalArgumentException.class, () -> IpAddresses.canonical("localhost"));
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.dictionary;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.practicum.EndpointHit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StatsDictionaryTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final StatsDictionary dictionary = new StatsDictionary(jdbcTemplate, 100);
+
+    @Test
+    void encode_ShouldReplaceAppAndUriWithIds() throws SQLException {
+        stubTable("stats_app", Map.of("app", 1));
+        stubTable("stats_uri", Map.of("/events/1", 10, "/events/2", 20));
+
+        List<EncodedHit> encoded = dictionary.encode(List.of(hit("/events/1"), hit("/events/2")));
+
+        assertEquals(new EncodedHit(1, 10, "10.0.0.1", encoded.get(0).timestamp()), encoded.get(0));
+        assertEquals(20, encoded.get(1).uriId());
+        verify(jdbcTemplate).update(startsWith("INSERT INTO stats_app"), any(Object[].class));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO stats_uri"), any(Object[].class));
+    }
+
+    @Test
+    void encode_ShouldUseCacheForKnownValues() throws SQLException {
+        stubTable("stats_app", Map.of("app", 1));
+        stubTable("stats_uri", Map.of("/events/1", 10));
+
+        dictionary.encode(List.of(hit("/events/1")));
+        dictionary.encode(List.of(hit("/events/1")));
+
+        verify(jdbcTemplate, times(2)).update(anyString(), any(Object[].class));
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void findUriIds_ShouldNotCreateEntries() throws SQLException {
+        stubTable("stats_uri", Map.of("/events/1", 10));
+
+        assertEquals(List.of(10), dictionary.findUriIds(List.of("/events/1", "/unknown")));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void findUriIds_ShouldExpandPatternsWithLike() throws SQLException {
+        stubTable("stats_uri", Map.of("/events/1", 10));
+        when(jdbcTemplate.queryForList(startsWith("SELECT id FROM stats_uri WHERE uri LIKE"), eq(Integer.class),
+                eq("/events/%"))).thenReturn(List.of(10, 20));
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("/a\\_b%"))).thenReturn(List.of(30));
+
+        assertEquals(List.of(10, 20, 30), dictionary.findUriIds(List.of("/events/1", "/events/*", "/a_b*")));
+    }
+
+    private void stubTable(String table, Map<String, Integer> rows) throws SQLException {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<String, Integer> row : rows.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("value")).thenReturn(row.getKey());
+                when(rs.getInt("id")).thenReturn(row.getValue());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(contains("FROM " + table), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    private EndpointHit hit(String uri) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip("10.0.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.frame;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import ru.practicum.EndpointHit;
+import ru.practicum.EndpointHitFrame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointHitFrameHttpMessageConverterTest {
+    private static final MediaType FRAME = MediaType.parseMediaType(EndpointHitFrame.MEDIA_TYPE);
+    private static final Type HIT_LIST = new ParameterizedTypeReference<List<EndpointHit>>() {
+    }.getType();
+
+    private final EndpointHitFrameHttpMessageConverter converter = new EndpointHitFrameHttpMessageConverter();
+
+    @Test
+    void read_ShouldDecodeBatch() throws IOException {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 2, 10, 30, 15);
+        byte[] frame = encode(List.of(hit("/events/1", timestamp),
+                hit("/events/2", timestamp.plusSeconds(1)).toBuilder().hitId("hit-2").build()));
+
+        assertTrue(converter.canRead(HIT_LIST, null, FRAME));
+        @SuppressWarnings("unchecked")
+        List<EndpointHit> hits = (List<EndpointHit>) converter.read(HIT_LIST, null, new MockHttpInputMessage(frame));
+
+        assertEquals(2, hits.size());
+        assertEquals("ewm-main-service", hits.get(0).getApp());
+        assertEquals("/events/2", hits.get(1).getUri());
+        assertEquals("192.163.0.1", hits.get(1).getIp());
+        assertEquals(timestamp.plusSeconds(1), hits.get(1).getTimestamp());
+        assertNull(hits.get(0).getHitId());
+        assertEquals("hit-2", hits.get(1).getHitId());
+    }
+
+    @Test
+    void read_ShouldRequireSingleHit_ForEndpointHit() throws IOException {
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 2, 10, 30, 15);
+        byte[] frame = encode(List.of(hit("/events/1", timestamp), hit("/events/2", timestamp)));
+
+        assertTrue(converter.canRead(EndpointHit.class, null, FRAME));
+        assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(EndpointHit.class, null, new MockHttpInputMessage(frame)));
+    }
+
+    @Test
+    void read_ShouldReject_TruncatedFrame() throws IOException {
+        byte[] frame = encode(List.of(hit("/events/1", LocalDateTime.of(2025, 1, 2, 10, 30, 15))));
+        byte[] truncated = Arrays.copyOf(frame, frame.length - 3);
+
+        assertThrows(HttpMessageNotReadableException.class,
+                () -> converter.read(HIT_LIST, null, new MockHttpInputMessage(truncated)));
+    }
+
+    @Test
+    void canRead_ShouldIgnoreOtherTypesAndJson() {
+        assertFalse(converter.canRead(String.class, null, FRAME));
+        assertFalse(converter.canRead(HIT_LIST, null, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(HIT_LIST, List.class, FRAME));
+    }
+
+    private byte[] encode(List<EndpointHit> hits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EndpointHitFrame.write(hits, out);
+        return out.toByteArray();
+    }
+
+    private EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("192.163.0.1")
+                .timestamp(timestamp)
+                .build();
+    }
+}
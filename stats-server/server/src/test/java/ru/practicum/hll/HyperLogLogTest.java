@@ -0,0 +1,73 @@
+package ru.practicum.hll;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_ShouldBeExactForSmallSets() {
+        HyperLogLog sketch = new HyperLogLog(12);
+
+        for (int i = 0; i < 300; i++) {
+            sketch.add("10.0.0." + (i % 100));
+        }
+
+        assertEquals(100, sketch.estimate());
+    }
+
+    @Test
+    void estimate_ShouldStayWithinErrorBoundForLargeSets() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        int distinct = 200_000;
+
+        for (int i = 0; i < distinct; i++) {
+            sketch.add("192.168." + (i >> 8 & 0xff) + "." + (i & 0xff) + ":" + (i >> 16));
+        }
+
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue(error < 4 * HyperLogLog.relativeError(12), "error " + error);
+    }
+
+    @Test
+    void merge_ShouldCountUnionOnce() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            first.add("ip-" + i);
+            second.add("ip-" + (i + 25_000));
+        }
+
+        long union = first.merge(second).estimate();
+
+        assertEquals(75_000, union, 75_000 * 4 * HyperLogLog.relativeError(12));
+    }
+
+    @Test
+    void merge_ShouldFoldToLowerPrecision() {
+        HyperLogLog precise = new HyperLogLog(14);
+        HyperLogLog coarse = new HyperLogLog(10);
+        for (int i = 0; i < 40_000; i++) {
+            precise.add("ip-" + i);
+        }
+
+        HyperLogLog merged = coarse.merge(precise);
+
+        assertEquals(10, merged.getPrecision());
+        assertEquals(40_000, merged.estimate(), 40_000 * 4 * HyperLogLog.relativeError(10));
+    }
+
+    @Test
+    void toBytes_ShouldRoundTripBothModes() {
+        HyperLogLog explicit = new HyperLogLog(12).add("127.0.0.1").add("127.0.0.2");
+        HyperLogLog dense = new HyperLogLog(12);
+        for (int i = 0; i < 10_000; i++) {
+            dense.add("ip-" + i);
+        }
+
+        assertEquals(2, HyperLogLog.fromBytes(explicit.toBytes()).estimate());
+        assertEquals(dense.estimate(), HyperLogLog.fromBytes(dense.toBytes()).estimate());
+        assertEquals(2 + 4096, dense.toBytes().length);
+    }
+}
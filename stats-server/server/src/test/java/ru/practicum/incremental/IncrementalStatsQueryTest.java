@@ -0,0 +1,126 @@
+package ru.practicum.incremental;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.practicum.StatsRepository;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+import ru.practicum.hll.HyperLogLog;
+import ru.practicum.model.AppUri;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IncrementalStatsQueryTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 9, 15);
+    private static final AppUri EVENT = new AppUri("ewm-main-service", "/events/1");
+
+    private final StatsRepository repository = mock(StatsRepository.class);
+    private final AtomicReference<LocalDateTime> now = new AtomicReference<>(LocalDateTime.of(2025, 1, 3, 12, 30));
+    private final IncrementalStatsQuery query = new IncrementalStatsQuery(repository, new SimpleMeterRegistry(), 100,
+            Duration.ofHours(1), Duration.ofMinutes(1), now::get, () -> 0L);
+
+    @Test
+    void query_ShouldReadOnlyTail_AfterPrefixIsStored() {
+        when(repository.getStats(any())).thenReturn(List.of(new ViewStats(EVENT.app(), EVENT.uri(), 2L)));
+
+        Optional<List<ViewStats>> first = query.query(request(now.get(), false));
+        now.set(now.get().plusMinutes(20));
+        Optional<List<ViewStats>> second = query.query(request(now.get(), false));
+
+        ArgumentCaptor<ViewsStatsRequest> periods = ArgumentCaptor.forClass(ViewsStatsRequest.class);
+        verify(repository, times(3)).getStats(periods.capture());
+        assertPeriod(periods.getAllValues().get(0), START, LocalDateTime.of(2025, 1, 3, 12, 0));
+        assertPeriod(periods.getAllValues().get(1), LocalDateTime.of(2025, 1, 3, 12, 0), now.get().minusMinutes(20));
+        assertPeriod(periods.getAllValues().get(2), LocalDateTime.of(2025, 1, 3, 12, 0), now.get());
+        assertEquals(4L, first.orElseThrow().get(0).getHits());
+        assertEquals(4L, second.orElseThrow().get(0).getHits());
+        assertEquals(1, query.size());
+    }
+
+    @Test
+    void query_ShouldExtendPrefix_ByPassedHour() {
+        when(repository.getStats(any())).thenReturn(List.of(new ViewStats(EVENT.app(), EVENT.uri(), 1L)));
+
+        query.query(request(now.get(), false));
+        now.set(now.get().plusHours(1));
+        Optional<List<ViewStats>> extended = query.query(request(now.get(), false));
+
+        ArgumentCaptor<ViewsStatsRequest> periods = ArgumentCaptor.forClass(ViewsStatsRequest.class);
+        verify(repository, times(4)).getStats(periods.capture());
+        assertPeriod(periods.getAllValues().get(2), LocalDateTime.of(2025, 1, 3, 12, 0),
+                LocalDateTime.of(2025, 1, 3, 13, 0));
+        assertPeriod(periods.getAllValues().get(3), LocalDateTime.of(2025, 1, 3, 13, 0), now.get());
+        assertEquals(3L, extended.orElseThrow().get(0).getHits());
+    }
+
+    @Test
+    void query_ShouldMergeSketches_WithoutChangingStoredPrefix() {
+        when(repository.getUniqueSketches(any()))
+                .thenAnswer(invocation -> sketches("10.0.0.1", "10.0.0.2"))
+                .thenAnswer(invocation -> sketches("10.0.0.2", "10.0.0.3"))
+                .thenAnswer(invocation -> sketches("10.0.0.4"));
+
+        Optional<List<ViewStats>> first = query.query(request(now.get(), true));
+        Optional<List<ViewStats>> second = query.query(request(now.get().plusMinutes(5), true));
+
+        assertEquals(3L, first.orElseThrow().get(0).getHits());
+        assertEquals(3L, second.orElseThrow().get(0).getHits());
+    }
+
+    @Test
+    void query_ShouldSkip_ExactUniqueAndRecentStart() {
+        ViewsStatsRequest exact = request(now.get(), true).toBuilder().exact(true).build();
+        ViewsStatsRequest recent = request(now.get(), false).toBuilder().start(now.get().minusMinutes(10)).build();
+
+        assertTrue(query.query(exact).isEmpty());
+        assertTrue(query.query(recent).isEmpty());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void query_ShouldSkipUnique_WhenRepositoryHasNoSketches() {
+        // Методы по умолчанию интерфейса, как у хранилища без скетчей
+        StatsRepository withoutSketches = mock(StatsRepository.class, CALLS_REAL_METHODS);
+        IncrementalStatsQuery query = new IncrementalStatsQuery(withoutSketches, new SimpleMeterRegistry(), 100,
+                Duration.ofHours(1), Duration.ofMinutes(1), now::get, () -> 0L);
+
+        assertTrue(query.query(request(now.get(), true)).isEmpty());
+    }
+
+    private static ViewsStatsRequest request(LocalDateTime end, boolean unique) {
+        return ViewsStatsRequest.builder()
+                .start(START)
+                .end(end)
+                .uris(List.of(EVENT.uri()))
+                .unique(unique)
+                .limit(10)
+                .build();
+    }
+
+    private static void assertPeriod(ViewsStatsRequest period, LocalDateTime start, LocalDateTime end) {
+        assertEquals(start, period.getStart());
+        assertEquals(end.toLocalDate(), period.getEnd().toLocalDate());
+        assertFalse(period.getEnd().isBefore(end.minusNanos(1000)));
+        assertFalse(period.getEnd().isAfter(end));
+        assertFalse(period.hasLimitCondition());
+    }
+
+    private static Optional<Map<AppUri, HyperLogLog>> sketches(String... ips) {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (String ip : ips) {
+            sketch.add(ip);
+        }
+        return Optional.of(new TreeMap<>(Map.of(EVENT, sketch)));
+    }
+}
@@ -0,0 +1,105 @@
+package ru.practicum.partition;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PartitionManagerTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PartitionManager partitionManager = new PartitionManager(jdbcTemplate,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+
+    @Test
+    void maintain_ShouldCreateDailyPartitionsAhead() {
+        configure(PartitionInterval.DAY, 2, 0);
+
+        partitionManager.maintain(LocalDateTime.of(2025, 1, 31, 15, 0));
+
+        verify(jdbcTemplate).execute("ALTER TABLE stats ATTACH PARTITION stats_p20250131 " +
+                "FOR VALUES FROM ('2025-01-31') TO ('2025-02-01')");
+        verify(jdbcTemplate).execute("ALTER TABLE stats ATTACH PARTITION stats_p20250201 " +
+                "FOR VALUES FROM ('2025-02-01') TO ('2025-02-02')");
+        verify(jdbcTemplate).execute("ALTER TABLE stats ATTACH PARTITION stats_p20250202 " +
+                "FOR VALUES FROM ('2025-02-02') TO ('2025-02-03')");
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class));
+    }
+
+    @Test
+    void maintain_ShouldCreateMonthlyPartitions() {
+        configure(PartitionInterval.MONTH, 1, 0);
+
+        partitionManager.maintain(LocalDateTime.of(2025, 12, 15, 0, 0));
+
+        verify(jdbcTemplate).execute("ALTER TABLE stats ATTACH PARTITION stats_p202512 " +
+                "FOR VALUES FROM ('2025-12-01') TO ('2026-01-01')");
+        verify(jdbcTemplate).execute("ALTER TABLE stats ATTACH PARTITION stats_p202601 " +
+                "FOR VALUES FROM ('2026-01-01') TO ('2026-02-01')");
+    }
+
+    @Test
+    void maintain_ShouldMoveDefaultRowsIntoNewPartition_BeforeAttaching() {
+        configure(PartitionInterval.DAY, 0, 0);
+
+        partitionManager.maintain(LocalDateTime.of(2025, 1, 31, 15, 0));
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute("LOCK TABLE stats_default IN EXCLUSIVE MODE");
+        inOrder.verify(jdbcTemplate).execute("CREATE TABLE stats_p20250131 (LIKE stats INCLUDING DEFAULTS)");
+        inOrder.verify(jdbcTemplate).update(startsWith("WITH moved AS (DELETE FROM stats_default"),
+                eq(LocalDateTime.of(2025, 1, 31, 0, 0)), eq(LocalDateTime.of(2025, 2, 1, 0, 0)));
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE stats ATTACH PARTITION stats_p20250131 " +
+                "FOR VALUES FROM ('2025-01-31') TO ('2025-02-01')");
+    }
+
+    @Test
+    void maintain_ShouldSkipExistingPartition() {
+        configure(PartitionInterval.DAY, 0, 0);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("stats_p20250131"))).thenReturn(true);
+
+        partitionManager.maintain(LocalDateTime.of(2025, 1, 31, 15, 0));
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void maintain_ShouldDropOnlyExpiredPartitions() {
+        configure(PartitionInterval.DAY, 0, 30);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("stats_p20241130", "stats_p20241201", "stats_p20241202", "stats_p20250115"));
+
+        partitionManager.maintain(LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        verify(jdbcTemplate).execute("DROP TABLE stats_p20241130");
+        verify(jdbcTemplate).execute("DROP TABLE stats_p20241201");
+        verify(jdbcTemplate, never()).execute("DROP TABLE stats_p20241202");
+        verify(jdbcTemplate, never()).execute("DROP TABLE stats_p20250115");
+    }
+
+    @Test
+    void maintain_ShouldDetachWhenConfigured() {
+        configure(PartitionInterval.DAY, 0, 1);
+        ReflectionTestUtils.setField(partitionManager, "retentionAction", RetentionAction.DETACH);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("stats_p20241201"));
+
+        partitionManager.maintain(LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        verify(jdbcTemplate).execute("ALTER TABLE stats DETACH PARTITION stats_p20241201");
+    }
+
+    private void configure(PartitionInterval interval, int premake, int retentionDays) {
+        ReflectionTestUtils.setField(partitionManager, "interval", interval);
+        ReflectionTestUtils.setField(partitionManager, "premake", premake);
+        ReflectionTestUtils.setField(partitionManager, "retentionDays", retentionDays);
+        ReflectionTestUtils.setField(partitionManager, "retentionAction", RetentionAction.DROP);
+    }
+}
@@ -0,0 +1,114 @@
+package ru.practicum.replica;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataSource primary = node("primary");
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        replicas.put("replica-0", node("replica-0"));
+        replicas.put("replica-1", node("replica-1"));
+        routing = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(10),
+                "SELECT seconds FROM replica_lag", meterRegistry);
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        List.of(primary, replicas.get("replica-0"), replicas.get("replica-1"))
+                .forEach(node -> new JdbcTemplate(node).execute("DROP ALL OBJECTS"));
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldAlternateReplicas_WhenReplicasAreInSync() {
+        routing.checkLag();
+
+        assertEquals(List.of("replica-0", "replica-1", "replica-0", "replica-1"), readOnlyNodes(4));
+        assertEquals("primary", readWrite.execute(status -> currentNode()));
+        assertEquals("primary", currentNode());
+        assertEquals(0.0, meterRegistry.get("stats.replicas.lag").tag("replica", "replica-1").gauge().value());
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldSkipLaggingReplica() {
+        setLag("replica-0", 30);
+        routing.checkLag();
+
+        assertEquals(List.of("replica-1", "replica-1", "replica-1"), readOnlyNodes(3));
+        assertEquals(30.0, meterRegistry.get("stats.replicas.lag").tag("replica", "replica-0").gauge().value());
+
+        setLag("replica-0", 1);
+        routing.checkLag();
+
+        assertTrue(readOnlyNodes(2).contains("replica-0"));
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldFallBackToPrimary_WhenNoReplicaIsUsable() {
+        assertEquals(List.of("primary"), readOnlyNodes(1));
+
+        setLag("replica-0", 30);
+        new JdbcTemplate(replicas.get("replica-1")).execute("DROP TABLE replica_lag");
+        routing.checkLag();
+
+        assertEquals(List.of("primary", "primary"), readOnlyNodes(2));
+        assertTrue(Double.isNaN(meterRegistry.get("stats.replicas.lag").tag("replica", "replica-1").gauge().value()));
+        assertEquals(3.0, meterRegistry.get("stats.replicas.fallbacks").counter().count());
+    }
+
+    private List<String> readOnlyNodes(int transactions) {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < transactions; i++) {
+            nodes.add(readOnly.execute(status -> currentNode()));
+        }
+        return nodes;
+    }
+
+    private String currentNode() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private void setLag(String replica, int seconds) {
+        new JdbcTemplate(replicas.get(replica)).update("UPDATE replica_lag SET seconds = ?", seconds);
+    }
+
+    private static DataSource node(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(32))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        jdbcTemplate.execute("CREATE TABLE replica_lag (seconds INT)");
+        jdbcTemplate.update("INSERT INTO replica_lag VALUES (0)");
+        return dataSource;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupQueryPlannerTest {
+
+    private final RollupQueryPlanner planner = new RollupQueryPlanner();
+
+    @Test
+    void plan_ShouldUseCoarsestBucketsAndRawEdges() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 22, 58, 30);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 5, 1, 2, 15);
+
+        RollupPlan plan = planner.plan(from, to);
+
+        assertEquals(new TimeRange(LocalDateTime.of(2025, 1, 2, 0, 0), LocalDateTime.of(2025, 1, 5, 0, 0)), plan.days());
+        assertTrue(plan.hours().contains(new TimeRange(LocalDateTime.of(2025, 1, 1, 23, 0), LocalDateTime.of(2025, 1, 2, 0, 0))));
+        assertTrue(plan.hours().contains(new TimeRange(LocalDateTime.of(2025, 1, 5, 0, 0), LocalDateTime.of(2025, 1, 5, 1, 0))));
+        assertTrue(plan.minutes().contains(new TimeRange(LocalDateTime.of(2025, 1, 1, 22, 59), LocalDateTime.of(2025, 1, 1, 23, 0))));
+        assertTrue(plan.minutes().contains(new TimeRange(LocalDateTime.of(2025, 1, 5, 1, 0), LocalDateTime.of(2025, 1, 5, 1, 2))));
+        assertTrue(plan.raw().contains(new TimeRange(from, LocalDateTime.of(2025, 1, 1, 22, 59))));
+        assertTrue(plan.raw().contains(new TimeRange(LocalDateTime.of(2025, 1, 5, 1, 2), to)));
+        assertExactCover(plan, from, to);
+    }
+
+    @Test
+    void plan_ShouldKeepShortRangeInRawData() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 10, 0, 10);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 1, 10, 0, 50);
+
+        RollupPlan plan = planner.plan(from, to);
+
+        assertEquals(List.of(new TimeRange(from, to), TimeRange.empty(from)), plan.raw());
+        assertTrue(plan.days().isEmpty());
+        assertExactCover(plan, from, to);
+    }
+
+    @Test
+    void plan_ShouldHaveFixedShapeForAnyRange() {
+        LocalDateTime from = LocalDateTime.of(2024, 12, 31, 23, 59, 59);
+        for (int minutes = 0; minutes < 3 * 24 * 60; minutes += 37) {
+            LocalDateTime to = from.plusMinutes(minutes).plusSeconds(minutes % 7);
+
+            RollupPlan plan = planner.plan(from, to);
+
+            assertEquals(4, plan.rawParameters().length);
+            assertEquals(10, plan.rollupParameters().length);
+            assertExactCover(plan, from, to);
+        }
+    }
+
+    @Test
+    void plan_ShouldNotUseRollupsCoarserThanRequested() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 22, 58, 30);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 5, 1, 2, 15);
+
+        RollupPlan plan = planner.plan(from, to, Granularity.HOUR);
+
+        assertTrue(plan.days().isEmpty());
+        assertTrue(plan.hours().contains(new TimeRange(LocalDateTime.of(2025, 1, 1, 23, 0), LocalDateTime.of(2025, 1, 5, 1, 0))));
+        assertExactCover(plan, from, to);
+    }
+
+    private void assertExactCover(RollupPlan plan, LocalDateTime from, LocalDateTime to) {
+        List<TimeRange> segments = new ArrayList<>();
+        segments.addAll(plan.raw());
+        segments.addAll(plan.minutes());
+        segments.addAll(plan.hours());
+        segments.add(plan.days());
+        List<TimeRange> nonEmpty = segments.stream()
+                .filter(range -> !range.isEmpty())
+                .sorted(Comparator.comparing(TimeRange::from))
+                .toList();
+
+        LocalDateTime cursor = from;
+        for (TimeRange range : nonEmpty) {
+            assertEquals(cursor, range.from());
+            cursor = range.to();
+        }
+        assertEquals(to, cursor);
+    }
+}
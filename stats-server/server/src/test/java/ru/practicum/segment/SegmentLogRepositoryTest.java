@@ -0,0 +1,240 @@
+package ru.practicum.segment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.EndpointHit;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewStatsBucket;
+import ru.practicum.ViewsStatsRequest;
+import ru.practicum.model.EndpointHitModel;
+import ru.practicum.rollup.Granularity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentLogRepositoryTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 1, 2, 0, 0);
+
+    @TempDir
+    private Path directory;
+
+    private SegmentLogRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    void getStats_ShouldCountHitsInRange_AcrossSegments() {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.1", DAY.plusHours(2)),
+                hit("/events/2", "10.0.0.2", DAY.plusHours(3)),
+                hit("/events/1", "10.0.0.3", DAY.plusDays(2)),
+                hit("/events/2", "10.0.0.2", DAY.minusDays(2)),
+                hit("/events/1", "::1", DAY.plusHours(4))));
+
+        List<ViewStats> stats = repository.getStats(request(DAY, DAY.plusDays(1), false));
+
+        assertEquals(2, stats.size());
+        assertEquals("/events/1", stats.get(0).getUri());
+        assertEquals(3L, stats.get(0).getHits());
+        assertEquals(1L, stats.get(1).getHits());
+        assertEquals(2, segmentFiles(), "6 hits with capacity 4 need two segments");
+    }
+
+    @Test
+    void getUniqueStats_ShouldCountDistinctIps_ForRequestedUris() {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.1", DAY.plusHours(2)),
+                hit("/events/1", "::ffff:10.0.0.2", DAY.plusHours(2)),
+                hit("/events/2", "10.0.0.2", DAY.plusHours(3))));
+
+        List<ViewStats> stats = repository.getUniqueStats(request(DAY, DAY.plusDays(1), true, "/events/1", "/nope"));
+
+        assertEquals(1, stats.size());
+        assertEquals(2L, stats.get(0).getHits());
+        assertTrue(repository.getStats(request(DAY, DAY.plusDays(1), false, "/nope")).isEmpty());
+    }
+
+    @Test
+    void getStats_ShouldMatchUriPatterns() {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events/2", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events", "10.0.0.1", DAY.plusHours(1)),
+                hit("/compilations/1", "10.0.0.1", DAY.plusHours(1))));
+
+        List<ViewStats> stats = repository.getStats(request(DAY, DAY.plusDays(1), false, "/events/*", "/nope/*"));
+
+        assertEquals(List.of("/events/1", "/events/2"), stats.stream().map(ViewStats::getUri).toList());
+    }
+
+    @Test
+    void getStats_ShouldCountOnlyRequestedApplication() {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("other-service", "/events/1", "10.0.0.1", DAY.plusHours(1))));
+
+        ViewsStatsRequest request = request(DAY, DAY.plusDays(1), false).toBuilder()
+                .application("other-service")
+                .build();
+        List<ViewStats> stats = repository.getStats(request);
+
+        assertEquals(1, stats.size());
+        assertEquals("other-service", stats.get(0).getApp());
+        assertTrue(repository.getStats(request.toBuilder().application("nope").build()).isEmpty());
+    }
+
+    @Test
+    void getTimeSeries_ShouldGroupHitsByInterval() {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1).plusMinutes(30)),
+                hit("/events/1", "10.0.0.2", DAY.plusHours(3)),
+                hit("/events/2", "10.0.0.2", DAY.plusHours(1))));
+
+        List<ViewStatsBucket> total = repository.getTimeSeries(request(DAY, DAY.plusDays(1), false), Granularity.HOUR);
+        List<ViewStatsBucket> unique = repository.getTimeSeries(request(DAY, DAY.plusDays(1), true, "/events/1"),
+                Granularity.HOUR);
+
+        assertEquals(List.of("/events/1 01:00 2", "/events/1 03:00 1", "/events/2 01:00 1"), describe(total));
+        assertEquals(List.of("/events/1 01:00 1", "/events/1 03:00 1"), describe(unique));
+    }
+
+    @Test
+    void exportHits_ShouldOrderByCreated_AndResumeAfterCursor() {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(2)),
+                hit("/events/1", "10.0.0.2", DAY.plusMinutes(30)),
+                hit("/events/2", "10.0.0.3", DAY.plusHours(2)),
+                hit("/events/1", "10.0.0.4", DAY.plusDays(2)),
+                hit("/events/1", "10.0.0.5", DAY.plusHours(1))));
+
+        List<EndpointHitModel> all = new ArrayList<>();
+        repository.exportHits(request(DAY, DAY.plusDays(1), false), DAY, 0, all::add);
+        List<EndpointHitModel> resumed = new ArrayList<>();
+        repository.exportHits(request(DAY, DAY.plusDays(1), false), all.get(2).getTimestamp(), all.get(2).getId(),
+                resumed::add);
+
+        assertEquals(List.of("10.0.0.2", "10.0.0.5", "10.0.0.1", "10.0.0.3"),
+                all.stream().map(EndpointHitModel::getIp).toList());
+        assertEquals(List.of(2L, 5L, 1L, 3L), all.stream().map(EndpointHitModel::getId).toList());
+        assertEquals(List.of("10.0.0.3"), resumed.stream().map(EndpointHitModel::getIp).toList());
+    }
+
+    @Test
+    void open_ShouldRecoverHitsAndIndex_AfterRestart() throws IOException {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.2", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.3", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.4", DAY.plusHours(1)),
+                hit("/events/2", "10.0.0.1", DAY.plusHours(2))));
+        repository.close();
+
+        repository = open();
+        repository.saveHit(hit("/events/2", "10.0.0.1", DAY.plusHours(3)));
+
+        List<ViewStats> stats = repository.getStats(request(DAY, DAY.plusDays(1), false));
+        assertEquals(4L, stats.get(0).getHits());
+        assertEquals(2L, stats.get(1).getHits());
+        assertEquals("10.0.0.1", streamedIps().get(0));
+    }
+
+    @Test
+    void open_ShouldDropTornRecord() throws IOException {
+        repository.saveHits(List.of(
+                hit("/events/1", "10.0.0.1", DAY.plusHours(1)),
+                hit("/events/1", "10.0.0.2", DAY.plusHours(1))));
+        repository.close();
+        // Портится timestamp второй записи, как если бы процесс упал посреди её записи
+        try (FileChannel channel = FileChannel.open(directory.resolve(Segment.fileName(0)), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0x7fffffff).flip(), 16 + Segment.RECORD_SIZE);
+        }
+
+        repository = open();
+        repository.saveHit(hit("/events/1", "10.0.0.3", DAY.plusHours(2)));
+
+        assertEquals(List.of("10.0.0.1", "10.0.0.3"), streamedIps());
+    }
+
+    @Test
+    void open_ShouldTruncateTornDictionaryEntry() throws IOException {
+        repository.saveHit(hit("/events/1", "10.0.0.1", DAY.plusHours(1)));
+        repository.close();
+        Files.write(directory.resolve("dictionary.log"), new byte[]{1, 0, 9, '/'}, StandardOpenOption.APPEND);
+
+        repository = open();
+        repository.saveHit(hit("/events/2", "10.0.0.1", DAY.plusHours(1)));
+
+        assertEquals(2, repository.getStats(request(DAY, DAY.plusDays(1), false)).size());
+    }
+
+    private SegmentLogRepository open() throws IOException {
+        SegmentLogRepository opened = new SegmentLogRepository(directory, 4, 2);
+        opened.open();
+        return opened;
+    }
+
+    private static List<String> describe(List<ViewStatsBucket> buckets) {
+        return buckets.stream()
+                .map(bucket -> bucket.getUri() + " " + bucket.getBucket().toLocalTime() + " " + bucket.getHits())
+                .toList();
+    }
+
+    private List<String> streamedIps() {
+        List<String> ips = new ArrayList<>();
+        repository.streamHitsSince(DAY, hit -> ips.add(hit.getIp()));
+        return ips;
+    }
+
+    private long segmentFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Segment::isSegmentFile).count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return hit("ewm-main-service", uri, ip, timestamp);
+    }
+
+    private static EndpointHit hit(String app, String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, boolean unique, String... uris) {
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .unique(unique)
+                .uris(List.of(uris))
+                .build();
+    }
+}
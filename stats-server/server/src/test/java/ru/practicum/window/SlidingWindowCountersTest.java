@@ -0,0 +1,137 @@
+package ru.practicum.window;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHit;
+import ru.practicum.StatsRepository;
+import ru.practicum.ViewStats;
+import ru.practicum.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SlidingWindowCountersTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 7, 2, 12, 0, 30);
+
+    private final StatsRepository statsRepository = mock(StatsRepository.class);
+    private final SlidingWindowCounters window = new SlidingWindowCounters(statsRepository, new SimpleMeterRegistry(),
+            Duration.ofHours(1), 4);
+
+    @Test
+    void rebuild_ShouldLoadHitsFromRepository() {
+        doAnswer(invocation -> {
+            Consumer<EndpointHit> consumer = invocation.getArgument(1);
+            consumer.accept(hit("/events/1", "10.0.0.1", NOW.minusMinutes(10)));
+            consumer.accept(hit("/events/1", "10.0.0.2", NOW.minusMinutes(5)));
+            return null;
+        }).when(statsRepository).streamHitsSince(eq(LocalDateTime.of(2025, 7, 2, 11, 1)), any());
+
+        window.rebuild(NOW);
+
+        Optional<List<ViewStats>> stats = window.query(request(NOW.minusMinutes(30), NOW, false), NOW);
+        assertEquals(2L, stats.orElseThrow().get(0).getHits());
+    }
+
+    @Test
+    void query_ShouldCountHitsInsideRange() {
+        window.rebuild(NOW);
+        window.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusMinutes(20)),
+                hit("/events/1", "10.0.0.1", NOW.minusMinutes(2)),
+                hit("/events/2", "10.0.0.1", NOW.minusMinutes(2))), NOW);
+
+        List<ViewStats> stats = window.query(request(NOW.minusMinutes(10), NOW, false), NOW).orElseThrow();
+
+        assertEquals(2, stats.size());
+        assertTrue(stats.stream().allMatch(viewStats -> viewStats.getHits() == 1L));
+    }
+
+    @Test
+    void query_ShouldMatchUriPatterns() {
+        window.rebuild(NOW);
+        window.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusMinutes(2)),
+                hit("/events/2", "10.0.0.1", NOW.minusMinutes(2)),
+                hit("/compilations", "10.0.0.1", NOW.minusMinutes(2))), NOW);
+
+        List<ViewStats> stats = window.query(request(NOW.minusMinutes(10), NOW, false, "/events/*"), NOW).orElseThrow();
+
+        assertEquals(2, stats.size());
+    }
+
+    @Test
+    void query_ShouldFallBack_WhenBoundarySplitsMinute() {
+        LocalDateTime minute = LocalDateTime.of(2025, 7, 2, 11, 50);
+        window.rebuild(NOW);
+        window.record(List.of(
+                hit("/events/1", "10.0.0.1", minute.plusSeconds(10)),
+                hit("/events/1", "10.0.0.1", minute.plusSeconds(40))), NOW);
+
+        assertTrue(window.query(request(minute.plusSeconds(20), NOW, false), NOW).isEmpty());
+        assertEquals(2L, window.query(request(minute.plusSeconds(5), minute.plusSeconds(45), false), NOW)
+                .orElseThrow().get(0).getHits());
+    }
+
+    @Test
+    void query_ShouldFallBack_WhenRangeStartsBeforeHorizon() {
+        window.rebuild(NOW);
+
+        assertTrue(window.query(request(NOW.minusHours(2), NOW, false), NOW).isEmpty());
+    }
+
+    @Test
+    void query_ShouldCountUniqueIps_OnlyUpToNewestHit() {
+        window.rebuild(NOW);
+        window.record(List.of(
+                hit("/events/1", "10.0.0.1", NOW.minusMinutes(20)),
+                hit("/events/1", "10.0.0.1", NOW.minusMinutes(10)),
+                hit("/events/1", "10.0.0.2", NOW.minusMinutes(5))), NOW);
+
+        assertEquals(2L, window.query(request(NOW.minusMinutes(30), NOW, true), NOW).orElseThrow().get(0).getHits());
+        assertTrue(window.query(request(NOW.minusMinutes(30), NOW.minusMinutes(7), true), NOW).isEmpty());
+    }
+
+    @Test
+    void prune_ShouldDropHitsOutsideHorizon() {
+        window.rebuild(NOW);
+        window.record(List.of(hit("/events/1", "10.0.0.1", NOW.minusMinutes(50))), NOW);
+
+        LocalDateTime later = NOW.plusMinutes(30);
+        window.prune(later);
+
+        assertEquals(List.of(), window.query(request(later.minusMinutes(59), later, false), later).orElseThrow());
+    }
+
+    @Test
+    void record_ShouldBeIgnored_UntilRebuilt() {
+        window.record(List.of(hit("/events/1", "10.0.0.1", NOW)), NOW);
+
+        assertTrue(window.query(request(NOW.minusMinutes(1), NOW, false), NOW).isEmpty());
+        verify(statsRepository, never()).getStats(any());
+    }
+
+    private ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, boolean unique, String... uris) {
+        return ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .uris(List.of(uris))
+                .unique(unique)
+                .build();
+    }
+
+    private EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}